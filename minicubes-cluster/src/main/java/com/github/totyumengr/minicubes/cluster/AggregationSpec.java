@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.cluster;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.github.totyumengr.minicubes.core.Aggregations;
+
+/**
+ * One aggregation of batch query, see {@link TimeSeriesMiniCubeManager#batch(List)}.
+ * 
+ * <p>Result of spec is same to the one of {@link Aggregations}'s method: <code>groupByDimName</code> is 
+ * <code>null</code> means no group for {@link Type#SUM} and {@link Type#COUNT}.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class AggregationSpec {
+
+    public enum Type {
+        /**
+         * @see Aggregations#sum(String, Map)
+         * @see Aggregations#sum(String, String, Map)
+         */
+        SUM, 
+        /**
+         * @see Aggregations#count(String, Map)
+         * @see Aggregations#count(String, String, Map)
+         */
+        COUNT, 
+        /**
+         * @see Aggregations#distinct(String, boolean, String, Map)
+         */
+        DISTINCT, 
+        /**
+         * @see Aggregations#discnt(String, boolean, String, Map)
+         */
+        DISCNT
+    }
+    
+    private Type type;
+    private String indName;
+    private String groupByDimName;
+    private boolean isDim = true;
+    private Map<String, List<Integer>> filterDims;
+    
+    public AggregationSpec() {
+        super();
+    }
+    
+    public AggregationSpec(Type type, String indName, String groupByDimName, boolean isDim,
+            Map<String, List<Integer>> filterDims) {
+        super();
+        this.type = type;
+        this.indName = indName;
+        this.groupByDimName = groupByDimName;
+        this.isDim = isDim;
+        this.filterDims = filterDims;
+    }
+    
+    public static AggregationSpec sum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims) {
+        return new AggregationSpec(Type.SUM, indName, groupByDimName, false, filterDims);
+    }
+    
+    public static AggregationSpec count(String indName, String groupByDimName, Map<String, List<Integer>> filterDims) {
+        return new AggregationSpec(Type.COUNT, indName, groupByDimName, false, filterDims);
+    }
+    
+    public static AggregationSpec distinct(String distinctName, boolean isDim, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        return new AggregationSpec(Type.DISTINCT, distinctName, groupByDimName, isDim, filterDims);
+    }
+    
+    public static AggregationSpec discnt(String distinctName, boolean isDim, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        return new AggregationSpec(Type.DISCNT, distinctName, groupByDimName, isDim, filterDims);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getIndName() {
+        return indName;
+    }
+
+    public void setIndName(String indName) {
+        this.indName = indName;
+    }
+
+    public String getGroupByDimName() {
+        return groupByDimName;
+    }
+
+    public void setGroupByDimName(String groupByDimName) {
+        this.groupByDimName = groupByDimName;
+    }
+
+    public boolean getIsDim() {
+        return isDim;
+    }
+
+    public void setIsDim(boolean isDim) {
+        this.isDim = isDim;
+    }
+
+    public Map<String, List<Integer>> getFilterDims() {
+        return filterDims;
+    }
+
+    public void setFilterDims(Map<String, List<Integer>> filterDims) {
+        this.filterDims = filterDims;
+    }
+    
+    public void writeTo(DataOutput out) throws IOException {
+        
+        out.writeByte(type.ordinal());
+        CompactSerialization.writeString(out, indName);
+        CompactSerialization.writeString(out, groupByDimName);
+        out.writeBoolean(isDim);
+        CompactSerialization.writeFilter(out, filterDims);
+    }
+    
+    public static AggregationSpec readFrom(DataInput in) throws IOException {
+        
+        return new AggregationSpec(Type.values()[in.readByte()], CompactSerialization.readString(in), 
+                CompactSerialization.readString(in), in.readBoolean(), CompactSerialization.readFilter(in));
+    }
+
+    @Override
+    public String toString() {
+        return "AggregationSpec [type=" + type + ", indName=" + indName + ", groupByDimName=" + groupByDimName
+                + ", isDim=" + isDim + ", filterDims=" + filterDims + "]";
+    }
+    
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.cluster;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import com.github.totyumengr.minicubes.core.Aggregations;
+import com.github.totyumengr.minicubes.core.Estimate;
+import com.github.totyumengr.minicubes.core.GroupKey;
+import com.github.totyumengr.minicubes.core.Having;
+import com.github.totyumengr.minicubes.core.HyperLogLog;
+import com.github.totyumengr.minicubes.core.Measure;
+import com.github.totyumengr.minicubes.core.Plan;
+import com.github.totyumengr.minicubes.core.TDigest;
+
+/**
+ * Non-blocking version of {@link Aggregations} on cluster. Time-series are bound when created, so it does not depend 
+ * on calling thread and can be shared.
+ * 
+ * <p>Future completes when all cubes answered or timeout, see {@link ExecutionResult#isPartial()}.
+ * @author mengran
+ *
+ * @see TimeSeriesMiniCubeManager#async(String...)
+ * @since 0.3
+ */
+public interface AsyncAggregations {
+
+    /**
+     * @see Aggregations#sum(String)
+     */
+    CompletableFuture<ExecutionResult<BigDecimal>> sum(String indName);
+    
+    /**
+     * @see Aggregations#sum(String, Map)
+     */
+    CompletableFuture<ExecutionResult<BigDecimal>> sum(String indName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#sum(String, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, BigDecimal>>> sum(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Cubes apply <code>having</code> when groups are partition-aligned: only one time-series is queried or group by 
+     * dimension which time-series is sharded by. Otherwise it is applied after merging.
+     * @see Aggregations#sum(String, String, Map, Having)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, BigDecimal>>> sum(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, Having having);
+    
+    /**
+     * @see Aggregations#topSum(String, String, Map, int)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, BigDecimal>>> topSum(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, int limit);
+    
+    /**
+     * @see Aggregations#sum(String, List, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<GroupKey, BigDecimal>>> sum(String indName, List<String> groupByDimNames, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#sumGroupingSets(String, List, Map)
+     */
+    CompletableFuture<ExecutionResult<List<Map<GroupKey, BigDecimal>>>> sumGroupingSets(String indName, 
+            List<List<String>> groupingSets, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#sum(List, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<String, BigDecimal>>> sum(List<String> indNames, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#sum(List, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<String, Map<Integer, BigDecimal>>>> sum(List<String> indNames, 
+            String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#measures(List, Map)
+     */
+    CompletableFuture<ExecutionResult<List<BigDecimal>>> measures(List<Measure> measures, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#measures(List, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, List<BigDecimal>>>> measures(List<Measure> measures, 
+            String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#count(String)
+     */
+    CompletableFuture<ExecutionResult<Long>> count(String indName);
+    
+    /**
+     * @see Aggregations#count(String, Map)
+     */
+    CompletableFuture<ExecutionResult<Long>> count(String indName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#count(String, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, Long>>> count(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Same pushdown as {@link #sum(String, String, Map, Having)}.
+     * @see Aggregations#count(String, String, Map, Having)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, Long>>> count(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, Having having);
+    
+    /**
+     * @see Aggregations#count(String, List, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<GroupKey, Long>>> count(String indName, List<String> groupByDimNames, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#distinct(String, boolean, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, RoaringBitmap>>> distinct(String distinctName, boolean isDim, 
+            String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#discnt(String, boolean, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, Integer>>> discnt(String distinctName, boolean isDim, 
+            String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#sketch(String, boolean, String, Map, int)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, HyperLogLog>>> sketch(String distinctName, boolean isDim, 
+            String groupByDimName, Map<String, List<Integer>> filterDims, int precision);
+    
+    /**
+     * @see Aggregations#discnt(String, boolean, String, Map, int)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, Integer>>> discnt(String distinctName, boolean isDim, 
+            String groupByDimName, Map<String, List<Integer>> filterDims, int precision);
+    
+    /**
+     * @see Aggregations#digest(String, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, TDigest>>> digest(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#quantiles(String, String, Map, double[])
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, List<BigDecimal>>>> quantiles(String indName, 
+            String groupByDimName, Map<String, List<Integer>> filterDims, double[] quantiles);
+    
+    /**
+     * @see Aggregations#histogram(String, String, Map, double[])
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, long[]>>> histogram(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, double[] edges);
+    
+    /**
+     * @see Aggregations#estimateSum(String, String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, Estimate>>> estimateSum(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see Aggregations#estimateCount(String, Map)
+     */
+    CompletableFuture<ExecutionResult<Map<Integer, Estimate>>> estimateCount(String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see TimeSeriesMiniCubeManager#explain(Map)
+     */
+    CompletableFuture<ExecutionResult<Map<String, Plan>>> explain(Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @see TimeSeriesMiniCubeManager#batch(List)
+     */
+    CompletableFuture<ExecutionResult<List<Object>>> batch(List<AggregationSpec> specs);
+    
+}
@@ -16,6 +16,7 @@
 package com.github.totyumengr.minicubes.cluster;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -24,6 +25,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
@@ -32,15 +35,27 @@ import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.totyumengr.minicubes.core.Condition;
+import com.github.totyumengr.minicubes.core.Estimate;
+import com.github.totyumengr.minicubes.core.Filter;
+import com.github.totyumengr.minicubes.core.GroupKey;
+import com.github.totyumengr.minicubes.core.Having;
+import com.github.totyumengr.minicubes.core.Measure;
+import com.github.totyumengr.minicubes.core.Plan;
 
 /**
  * @author mengran
@@ -55,6 +70,19 @@ public class BootTimeSeriesMiniCubeController {
     
     public static final String OK = "ok";
     
+    /**
+     * Response header of cube IDs which contributed to result.
+     */
+    public static final String CONTRIBUTORS_HEADER = "X-Minicubes-Contributors";
+    /**
+     * Response header of cube IDs which did not answer in time, means result is partial.
+     */
+    public static final String MISSING_HEADER = "X-Minicubes-Missing";
+    /**
+     * Key of {@link Condition} in JSON of filter.
+     */
+    public static final String WHERE_KEY = "$where";
+    
     @Autowired
     private TimeSeriesMiniCubeManager manager;
     
@@ -93,6 +121,16 @@ public class BootTimeSeriesMiniCubeController {
         return newCubeId;
     }
     
+    @RequestMapping(value="/autoassign", method=RequestMethod.POST)
+    public @ResponseBody Collection<String> autoassign(@RequestParam(required=false) String... timeSeries) {
+        
+        LOGGER.info("Try to auto-assign {} and re-balance cluster.", ObjectUtils.getDisplayString(timeSeries));
+        Collection<String> newCubeIds = manager.autoAssign(timeSeries);
+        LOGGER.info("Sucess to auto-assign, new cubeIds is {}.", newCubeIds);
+        
+        return newCubeIds;
+    }
+    
     @RequestMapping(value="/merge", method={RequestMethod.POST, RequestMethod.GET})
     public @ResponseBody String merge(@NotBlank @RequestParam int version, 
             @NotBlank @RequestParam String timeSeries) {
@@ -104,72 +142,375 @@ public class BootTimeSeriesMiniCubeController {
         return OK;
     }
     
+    /**
+     * Parse filter of request, values of dimension are list of integer like <code>{"tradeId":[3201,3202]}</code>, 
+     * values of indicate are list of range predicate like <code>{"csm":[{"op":"GT","value":10}]}</code>, value of 
+     * {@value #WHERE_KEY} is expression on dimensions like 
+     * <code>{"op":"NOT","children":[{"op":"IN","dimName":"tradeId","values":[3201]}]}</code>.
+     * @param filterDims JSON of filter
+     * @return <code>null</code> when empty, {@link Filter} when has range predicates on indicates or expression.
+     * @throws Throwable when JSON is invalid
+     */
+    private Map<String, List<Integer>> filter(String filterDims) throws Throwable {
+        
+        if (filterDims == null || "".equals(filterDims)) {
+            return null;
+        }
+        Map<String, Object> json = objectMapper.readValue(filterDims, new TypeReference<Map<String, Object>>() {});
+        Filter filter = new Filter();
+        for (Map.Entry<String, Object> e : json.entrySet()) {
+            if (WHERE_KEY.equals(e.getKey())) {
+                filter.where(objectMapper.convertValue(e.getValue(), Condition.class));
+                continue;
+            }
+            List<?> values = (List<?>) e.getValue();
+            if (!values.isEmpty() && values.get(0) instanceof Map) {
+                for (Object having : values) {
+                    filter.measure(e.getKey(), objectMapper.convertValue(having, Having.class));
+                }
+            } else {
+                filter.put(e.getKey(), values.stream().map(v -> ((Number) v).intValue())
+                        .collect(Collectors.toList()));
+            }
+        }
+        return Filter.isPlain(filter) ? new HashMap<String, List<Integer>>(filter) : filter;
+    }
+    
     @RequestMapping(value="/sum", method={RequestMethod.POST, RequestMethod.GET})
-    public @ResponseBody BigDecimal sum(@NotBlank @RequestParam String indName, 
+    public DeferredResult<ResponseEntity<BigDecimal>> sum(@NotBlank @RequestParam String indName, 
             @RequestParam(required=false) String filterDims,
             @NotBlank @RequestParam String... timeSeries) throws Throwable {
         
         LOGGER.info("Try to sum {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), filterDims);
         long timing = System.currentTimeMillis();
-        Map<String, List<Integer>> filter = (filterDims == null || "".equals(filterDims)) ? null
-                : objectMapper.readValue(filterDims, new TypeReference<Map<String, List<Integer>>>() {});
-        BigDecimal sum = manager.aggs(timeSeries).sum(indName, filter);
-        LOGGER.info("Sucess to sum {} on {} result is {} using {}ms.", indName, timeSeries, sum, System.currentTimeMillis() - timing);
+        Map<String, List<Integer>> filter = filter(filterDims);
         
-        return sum;
+        return deferred(manager.async(timeSeries).sum(indName, filter).thenApply(sum -> {
+            LOGGER.info("Sucess to sum {} on {} result is {} using {}ms.", indName, timeSeries, sum.getResult(), 
+                    System.currentTimeMillis() - timing);
+            return sum;
+        }));
     }
     
     @RequestMapping(value="/groupsum", method={RequestMethod.POST, RequestMethod.GET})
-    public @ResponseBody Map<Integer, BigDecimal> groupsum(@NotBlank @RequestParam String indName, 
+    public DeferredResult<ResponseEntity<Map<Integer, BigDecimal>>> groupsum(@NotBlank @RequestParam String indName, 
             @RequestParam(required=false) String filterDims,
             @RequestParam String groupbyDim,
+            @RequestParam(required=false) String having,
             @NotBlank @RequestParam String... timeSeries) throws Throwable {
         
-        LOGGER.info("Try to sum {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), filterDims);
+        LOGGER.info("Try to sum {} on {} with filter {} having {}.", indName, ObjectUtils.getDisplayString(timeSeries), 
+                filterDims, having);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        Having h = (having == null || "".equals(having)) ? null : objectMapper.readValue(having, Having.class);
+        
+        return deferred(manager.async(timeSeries).sum(indName, groupbyDim, filter, h).thenApply(sum -> {
+            LOGGER.info("Sucess to sum {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    sum.getResult().size(), System.currentTimeMillis() - timing);
+            LOGGER.debug("Sucess to sum {} on {} result is {}.", indName, timeSeries, sum.getResult());
+            return sum;
+        }));
+    }
+    
+    @RequestMapping(value="/topsum", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<Integer, BigDecimal>>> topsum(@NotBlank @RequestParam String indName, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam String groupbyDim,
+            @RequestParam int limit,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to sum top {} of {} on {} with filter {}.", limit, indName, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        
+        return deferred(manager.async(timeSeries).topSum(indName, groupbyDim, filter, limit).thenApply(sum -> {
+            LOGGER.info("Sucess to sum top {} of {} on {} using {}ms.", limit, indName, timeSeries, 
+                    System.currentTimeMillis() - timing);
+            LOGGER.debug("Sucess to sum top {} of {} on {} result is {}.", limit, indName, timeSeries, sum.getResult());
+            return sum;
+        }));
+    }
+    
+    @RequestMapping(value="/crosssum", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<String, BigDecimal>>> crosssum(@NotBlank @RequestParam String indName, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam List<String> groupbyDims,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to sum {} group by {} on {} with filter {}.", indName, groupbyDims, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        
+        return deferred(manager.async(timeSeries).sum(indName, groupbyDims, filter).thenApply(sum -> {
+            LOGGER.info("Sucess to sum {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    sum.getResult().size(), System.currentTimeMillis() - timing);
+            return sum.map(e -> unpack(e));
+        }));
+    }
+    
+    @RequestMapping(value="/groupingsets", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<List<Map<String, BigDecimal>>>> groupingsets(
+            @NotBlank @RequestParam String indName, 
+            @RequestParam(required=false) String filterDims,
+            @NotBlank @RequestParam String groupingSets,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to sum {} grouping sets {} on {} with filter {}.", indName, groupingSets, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        List<List<String>> sets = objectMapper.readValue(groupingSets, new TypeReference<List<List<String>>>() {});
+        
+        return deferred(manager.async(timeSeries).sumGroupingSets(indName, sets, filter).thenApply(sum -> {
+            LOGGER.info("Sucess to sum {} grouping sets {} on {} using {}ms.", indName, sets, timeSeries, 
+                    System.currentTimeMillis() - timing);
+            return sum.map(e -> {
+                List<Map<String, BigDecimal>> result = new ArrayList<Map<String, BigDecimal>>(e.size());
+                for (int i = 0; i < e.size(); i++) {
+                    result.add(unpack(e.get(i)));
+                }
+                return result;
+            });
+        }));
+    }
+    
+    @RequestMapping(value="/sums", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<String, BigDecimal>>> sums(@NotBlank @RequestParam List<String> indNames, 
+            @RequestParam(required=false) String filterDims,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to sum {} on {} with filter {}.", indNames, ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        
+        return deferred(manager.async(timeSeries).sum(indNames, filter).thenApply(sum -> {
+            LOGGER.info("Sucess to sum {} on {} result is {} using {}ms.", indNames, timeSeries, sum.getResult(), 
+                    System.currentTimeMillis() - timing);
+            return sum;
+        }));
+    }
+    
+    @RequestMapping(value="/groupsums", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<String, Map<Integer, BigDecimal>>>> groupsums(
+            @NotBlank @RequestParam List<String> indNames, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam String groupbyDim,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to sum {} on {} with filter {}.", indNames, ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        
+        return deferred(manager.async(timeSeries).sum(indNames, groupbyDim, filter).thenApply(sum -> {
+            LOGGER.info("Sucess to sum {} on {} using {}ms.", indNames, timeSeries, System.currentTimeMillis() - timing);
+            LOGGER.debug("Sucess to sum {} on {} result is {}.", indNames, timeSeries, sum.getResult());
+            return sum;
+        }));
+    }
+    
+    @RequestMapping(value="/measures", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<List<BigDecimal>>> measures(@NotBlank @RequestParam String measures, 
+            @RequestParam(required=false) String filterDims,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to calculate {} on {} with filter {}.", measures, ObjectUtils.getDisplayString(timeSeries), 
+                filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        List<Measure> ms = objectMapper.readValue(measures, new TypeReference<List<Measure>>() {});
+        
+        return deferred(manager.async(timeSeries).measures(ms, filter).thenApply(result -> {
+            LOGGER.info("Sucess to calculate {} on {} result is {} using {}ms.", ms, timeSeries, result.getResult(), 
+                    System.currentTimeMillis() - timing);
+            return result;
+        }));
+    }
+    
+    @RequestMapping(value="/groupmeasures", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<Integer, List<BigDecimal>>>> groupmeasures(
+            @NotBlank @RequestParam String measures, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam String groupbyDim,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to calculate {} on {} with filter {}.", measures, ObjectUtils.getDisplayString(timeSeries), 
+                filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        List<Measure> ms = objectMapper.readValue(measures, new TypeReference<List<Measure>>() {});
+        
+        return deferred(manager.async(timeSeries).measures(ms, groupbyDim, filter).thenApply(result -> {
+            LOGGER.info("Sucess to calculate {} on {} result size is {} using {}ms.", ms, timeSeries, 
+                    result.getResult().size(), System.currentTimeMillis() - timing);
+            return result;
+        }));
+    }
+    
+    /**
+     * Approximate quantiles by t-digest, <code>quantiles</code> is JSON array like <code>[0.5,0.95]</code>. Result of
+     * all records is in group <code>0</code> when <code>groupbyDim</code> is absent.
+     */
+    @RequestMapping(value="/quantiles", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<Integer, List<BigDecimal>>>> quantiles(
+            @NotBlank @RequestParam String indName, 
+            @NotBlank @RequestParam String quantiles, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam(required=false) String groupbyDim,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to calculate quantiles {} of {} on {} with filter {}.", quantiles, indName, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        double[] qs = objectMapper.readValue(quantiles, double[].class);
+        
+        return deferred(manager.async(timeSeries).quantiles(indName, groupbyDim, filter, qs).thenApply(result -> {
+            LOGGER.info("Sucess to calculate quantiles {} of {} on {} result size is {} using {}ms.", quantiles, 
+                    indName, timeSeries, result.getResult().size(), System.currentTimeMillis() - timing);
+            return result;
+        }));
+    }
+    
+    /**
+     * Exact histogram, <code>edges</code> is JSON array of increasing edges of bins like <code>[0,10,100]</code>. 
+     * Result of all records is in group <code>0</code> when <code>groupbyDim</code> is absent.
+     */
+    @RequestMapping(value="/histogram", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<Integer, long[]>>> histogram(@NotBlank @RequestParam String indName, 
+            @NotBlank @RequestParam String edges, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam(required=false) String groupbyDim,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to calculate histogram {} of {} on {} with filter {}.", edges, indName, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        double[] es = objectMapper.readValue(edges, double[].class);
+        
+        return deferred(manager.async(timeSeries).histogram(indName, groupbyDim, filter, es).thenApply(result -> {
+            LOGGER.info("Sucess to calculate histogram {} of {} on {} result size is {} using {}ms.", edges, 
+                    indName, timeSeries, result.getResult().size(), System.currentTimeMillis() - timing);
+            return result;
+        }));
+    }
+    
+    /**
+     * Quick look which only scans sample of cubes, estimate of sum or count when <code>indName</code> is absent, 
+     * with half width of 95% confidence interval. Result of all records is in group <code>0</code> when 
+     * <code>groupbyDim</code> is absent.
+     */
+    @RequestMapping(value="/estimate", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<Integer, Estimate>>> estimate(
+            @RequestParam(required=false) String indName, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam(required=false) String groupbyDim,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to estimate {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), 
+                filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        AsyncAggregations async = manager.async(timeSeries);
+        
+        return deferred((StringUtils.hasText(indName) ? async.estimateSum(indName, groupbyDim, filter) 
+                : async.estimateCount(groupbyDim, filter)).thenApply(result -> {
+            LOGGER.info("Sucess to estimate {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    result.getResult().size(), System.currentTimeMillis() - timing);
+            return result;
+        }));
+    }
+    
+    /**
+     * Plan of every cube for given filter: how records are read, estimated rows and aggregations which are answered 
+     * by index only.
+     */
+    @RequestMapping(value="/explain", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<String, Plan>>> explain(
+            @RequestParam(required=false) String filterDims,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to explain filter {} on {}.", filterDims, ObjectUtils.getDisplayString(timeSeries));
         long timing = System.currentTimeMillis();
-        Map<String, List<Integer>> filter = (filterDims == null || "".equals(filterDims)) ? null
-                : objectMapper.readValue(filterDims, new TypeReference<Map<String, List<Integer>>>() {});
-        Map<Integer, BigDecimal> sum = manager.aggs(timeSeries).sum(indName, groupbyDim, filter);
-        LOGGER.info("Sucess to sum {} on {} result size is {} using {}ms.", indName, timeSeries, sum.size(), System.currentTimeMillis() - timing);
-        LOGGER.debug("Sucess to sum {} on {} result is {}.", indName, timeSeries, sum);
+        Map<String, List<Integer>> filter = filter(filterDims);
         
-        return sum;
+        return deferred(manager.async(timeSeries).explain(filter).thenApply(result -> {
+            LOGGER.info("Sucess to explain filter {} on {} result is {} using {}ms.", filterDims, timeSeries, 
+                    result.getResult(), System.currentTimeMillis() - timing);
+            return result;
+        }));
     }
     
     @RequestMapping(value="/count", method={RequestMethod.POST, RequestMethod.GET})
-    public @ResponseBody Long count(@NotBlank @RequestParam String indName, 
+    public DeferredResult<ResponseEntity<Long>> count(@NotBlank @RequestParam String indName, 
             @RequestParam(required=false) String filterDims,
             @NotBlank @RequestParam String... timeSeries) throws Throwable {
         
         LOGGER.info("Try to count {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), filterDims);
         long timing = System.currentTimeMillis();
-        Map<String, List<Integer>> filter = (filterDims == null || "".equals(filterDims)) ? null
-                : objectMapper.readValue(filterDims, new TypeReference<Map<String, List<Integer>>>() {});
-        long count = manager.aggs(timeSeries).count(indName, filter);
-        LOGGER.info("Sucess to count {} on {} result is {} using {}ms.", indName, timeSeries, count, System.currentTimeMillis() - timing);
+        Map<String, List<Integer>> filter = filter(filterDims);
         
-        return count;
+        return deferred(manager.async(timeSeries).count(indName, filter).thenApply(count -> {
+            LOGGER.info("Sucess to count {} on {} result is {} using {}ms.", indName, timeSeries, count.getResult(), 
+                    System.currentTimeMillis() - timing);
+            return count;
+        }));
     }
     
     @RequestMapping(value="/groupcount", method={RequestMethod.POST, RequestMethod.GET})
-    public @ResponseBody Map<Integer, Long> groupcount(@NotBlank @RequestParam String indName, 
+    public DeferredResult<ResponseEntity<Map<Integer, Long>>> groupcount(@NotBlank @RequestParam String indName, 
             @RequestParam(required=false) String filterDims,
             @RequestParam String groupbyDim,
+            @RequestParam(required=false) String having,
             @NotBlank @RequestParam String... timeSeries) throws Throwable {
         
-        LOGGER.info("Try to count {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), filterDims);
+        LOGGER.info("Try to count {} on {} with filter {} having {}.", indName, ObjectUtils.getDisplayString(timeSeries), 
+                filterDims, having);
         long timing = System.currentTimeMillis();
-        Map<String, List<Integer>> filter = (filterDims == null || "".equals(filterDims)) ? null
-                : objectMapper.readValue(filterDims, new TypeReference<Map<String, List<Integer>>>() {});
-        Map<Integer, Long> count = manager.aggs(timeSeries).count(indName, groupbyDim, filter);
-        LOGGER.info("Sucess to count {} on {} result size is {} using {}ms.", indName, timeSeries, count.size(), System.currentTimeMillis() - timing);
-        LOGGER.debug("Sucess to count {} on {} result is {}.", indName, timeSeries, count);
+        Map<String, List<Integer>> filter = filter(filterDims);
+        Having h = (having == null || "".equals(having)) ? null : objectMapper.readValue(having, Having.class);
         
-        return count;
+        return deferred(manager.async(timeSeries).count(indName, groupbyDim, filter, h).thenApply(count -> {
+            LOGGER.info("Sucess to count {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    count.getResult().size(), System.currentTimeMillis() - timing);
+            LOGGER.debug("Sucess to count {} on {} result is {}.", indName, timeSeries, count.getResult());
+            return count;
+        }));
+    }
+    
+    @RequestMapping(value="/crosscount", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<Map<String, Long>>> crosscount(@NotBlank @RequestParam String indName, 
+            @RequestParam(required=false) String filterDims,
+            @RequestParam List<String> groupbyDims,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to count {} group by {} on {} with filter {}.", indName, groupbyDims, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        
+        return deferred(manager.async(timeSeries).count(indName, groupbyDims, filter).thenApply(count -> {
+            LOGGER.info("Sucess to count {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    count.getResult().size(), System.currentTimeMillis() - timing);
+            return count.map(e -> unpack(e));
+        }));
+    }
+    
+    /**
+     * Composite key to comma delimited dimension values, in order of group-by dimensions.
+     */
+    private static <V> Map<String, V> unpack(Map<GroupKey, V> group) {
+        
+        Map<String, V> result = new HashMap<String, V>();
+        group.forEach((k, v) -> result.put(StringUtils.collectionToCommaDelimitedString(k.toList()), v));
+        return result;
     }
     
     @RequestMapping(value="/distinct", method={RequestMethod.POST, RequestMethod.GET})
-    public @ResponseBody Map<Integer, Set<Integer>> distinct(@NotBlank @RequestParam String indName,
+    public DeferredResult<ResponseEntity<Map<Integer, Set<Integer>>>> distinct(@NotBlank @RequestParam String indName,
             @NotBlank @RequestParam(required=false) Boolean isDim,
             @RequestParam(required=false) String filterDims,
             @RequestParam String groupbyDim,
@@ -177,11 +518,19 @@ public class BootTimeSeriesMiniCubeController {
         
         LOGGER.info("Try to distinct {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), filterDims);
         long timing = System.currentTimeMillis();
-        Map<String, List<Integer>> filter = (filterDims == null || "".equals(filterDims)) ? null
-                : objectMapper.readValue(filterDims, new TypeReference<Map<String, List<Integer>>>() {});
-        Map<Integer, RoaringBitmap> distinct = manager.aggs(timeSeries).distinct(indName, isDim == null ? true : isDim, groupbyDim, filter);
-        LOGGER.info("Sucess to distinct {} on {} result size is {} using {}ms.", indName, timeSeries, distinct.size(), System.currentTimeMillis() - timing);
-        LOGGER.debug("Sucess to distinct {} on {} result is {}.", indName, timeSeries, distinct);
+        Map<String, List<Integer>> filter = filter(filterDims);
+        
+        return deferred(manager.async(timeSeries).distinct(indName, isDim == null ? true : isDim, groupbyDim, filter)
+                .thenApply(distinct -> {
+            LOGGER.info("Sucess to distinct {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    distinct.getResult().size(), System.currentTimeMillis() - timing);
+            LOGGER.debug("Sucess to distinct {} on {} result is {}.", indName, timeSeries, distinct.getResult());
+            
+            return distinct.map(e -> toSets(e));
+        }));
+    }
+    
+    private static Map<Integer, Set<Integer>> toSets(Map<Integer, RoaringBitmap> distinct) {
         
         Map<Integer, Set<Integer>> result = new HashMap<Integer, Set<Integer>>();
         distinct.forEach(new BiConsumer<Integer, RoaringBitmap>() {
@@ -190,25 +539,81 @@ public class BootTimeSeriesMiniCubeController {
                 result.put(t, Arrays.stream(u.toArray()).collect(HashSet<Integer> :: new, Set :: add, (l, r) -> {}));
             }
         });
-        
         return result;
     }
     
+    /**
+     * Distinct-count is approximate by HyperLogLog when <code>precision</code> is given.
+     */
     @RequestMapping(value="/distinctcount", method={RequestMethod.POST, RequestMethod.GET})
-    public @ResponseBody Map<Integer, Integer> distinctCount(@NotBlank @RequestParam String indName,
+    public DeferredResult<ResponseEntity<Map<Integer, Integer>>> distinctCount(@NotBlank @RequestParam String indName,
             @NotBlank @RequestParam(required=false) Boolean isDim,
             @RequestParam(required=false) String filterDims,
             @RequestParam String groupbyDim,
+            @RequestParam(required=false) Integer precision,
+            @NotBlank @RequestParam String... timeSeries) throws Throwable {
+        
+        LOGGER.info("Try to distinct-count {} on {} with filter {} precision {}.", indName, 
+                ObjectUtils.getDisplayString(timeSeries), filterDims, precision);
+        long timing = System.currentTimeMillis();
+        Map<String, List<Integer>> filter = filter(filterDims);
+        boolean dim = isDim == null ? true : isDim;
+        
+        return deferred((precision == null ? manager.async(timeSeries).discnt(indName, dim, groupbyDim, filter) 
+                : manager.async(timeSeries).discnt(indName, dim, groupbyDim, filter, precision))
+                .thenApply(distinct -> {
+            LOGGER.info("Sucess to distinct-count {} on {} result size is {} using {}ms.", indName, timeSeries, 
+                    distinct.getResult().size(), System.currentTimeMillis() - timing);
+            LOGGER.debug("Sucess to distinct-count {} on {} result is {}.", indName, timeSeries, distinct.getResult());
+            return distinct;
+        }));
+    }
+    
+    @RequestMapping(value="/batch", method={RequestMethod.POST, RequestMethod.GET})
+    public DeferredResult<ResponseEntity<List<Object>>> batch(@NotBlank @RequestParam String specs,
             @NotBlank @RequestParam String... timeSeries) throws Throwable {
         
-        LOGGER.info("Try to distinct-count {} on {} with filter {}.", indName, ObjectUtils.getDisplayString(timeSeries), filterDims);
+        LOGGER.info("Try to batch {} on {}.", specs, ObjectUtils.getDisplayString(timeSeries));
         long timing = System.currentTimeMillis();
-        Map<String, List<Integer>> filter = (filterDims == null || "".equals(filterDims)) ? null
-                : objectMapper.readValue(filterDims, new TypeReference<Map<String, List<Integer>>>() {});
-        Map<Integer, Integer> distinct = manager.aggs(timeSeries).discnt(indName, isDim == null ? true : isDim, groupbyDim, filter);
-        LOGGER.info("Sucess to distinct-count {} on {} result size is {} using {}ms.", indName, timeSeries, distinct.size(), System.currentTimeMillis() - timing);
-        LOGGER.debug("Sucess to distinct-count {} on {} result is {}.", indName, timeSeries, distinct);
+        List<AggregationSpec> aggs = objectMapper.readValue(specs, new TypeReference<List<AggregationSpec>>() {});
+        
+        return deferred(manager.async(timeSeries).batch(aggs).thenApply(batch -> {
+            LOGGER.info("Sucess to batch {} aggregations on {} using {}ms.", aggs.size(), timeSeries, 
+                    System.currentTimeMillis() - timing);
+            return batch.map(e -> {
+                List<Object> result = new ArrayList<Object>(e.size());
+                for (int i = 0; i < e.size(); i++) {
+                    @SuppressWarnings("unchecked")
+                    Object r = aggs.get(i).getType() == AggregationSpec.Type.DISTINCT 
+                            ? toSets((Map<Integer, RoaringBitmap>) e.get(i)) : e.get(i);
+                    result.add(r);
+                }
+                return result;
+            });
+        }));
+    }
+    
+    /**
+     * Release request thread when waiting for cluster, and response when result arrived. Cubes contributed to result 
+     * are put into headers.
+     */
+    private <T> DeferredResult<ResponseEntity<T>> deferred(CompletableFuture<ExecutionResult<T>> future) {
+        
+        DeferredResult<ResponseEntity<T>> deferred = new DeferredResult<ResponseEntity<T>>();
+        future.whenComplete((result, t) -> {
+            if (t != null) {
+                LOGGER.error("Fail to aggregate on cluster.", t);
+                deferred.setErrorResult(t instanceof CompletionException ? t.getCause() : t);
+                return;
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(CONTRIBUTORS_HEADER, StringUtils.collectionToCommaDelimitedString(result.getContributors()));
+            if (result.isPartial()) {
+                headers.add(MISSING_HEADER, StringUtils.collectionToCommaDelimitedString(result.getMissing()));
+            }
+            deferred.setResult(new ResponseEntity<T>(result.getResult(), headers, HttpStatus.OK));
+        });
         
-        return distinct;
+        return deferred;
     }
 }
@@ -0,0 +1,1187 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.cluster;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import com.github.totyumengr.minicubes.core.Condition;
+import com.github.totyumengr.minicubes.core.Estimate;
+import com.github.totyumengr.minicubes.core.Filter;
+import com.github.totyumengr.minicubes.core.GroupKey;
+import com.github.totyumengr.minicubes.core.Having;
+import com.github.totyumengr.minicubes.core.HyperLogLog;
+import com.github.totyumengr.minicubes.core.TDigest;
+import com.github.totyumengr.minicubes.core.Measure;
+import com.github.totyumengr.minicubes.core.Plan;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * Compact binary encoding of distributed tasks and results, replace Java serialization which is costly in group-by.
+ * 
+ * <p>Grouped results are written as parallel arrays: sorted keys as var-int deltas, then values. {@link BigDecimal} 
+ * is written as scale and unscaled long, {@link RoaringBitmap} use its native format.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public final class CompactSerialization {
+
+    public static final int FACTORY_ID = 1000;
+    
+    public static final int DECIMAL_MAP = 1;
+    public static final int LONG_MAP = 2;
+    public static final int BITMAP_MAP = 3;
+    public static final int BATCH_RESULT = 4;
+    public static final int MEASURE_MAP = 5;
+    public static final int GROUP_DECIMAL_MAP = 6;
+    public static final int GROUP_LONG_MAP = 7;
+    public static final int STATE_MAP = 8;
+    public static final int SKETCH_MAP = 9;
+    public static final int DIGEST_MAP = 10;
+    public static final int HISTOGRAM_MAP = 11;
+    public static final int ESTIMATE_MAP = 12;
+    public static final int PLAN_MAP = 13;
+    
+    private CompactSerialization() {
+        super();
+    }
+    
+    /**
+     * @param typeId type of result
+     * @return result instance, <code>null</code> if given type is not a result.
+     */
+    public static IdentifiedDataSerializable create(int typeId) {
+        
+        switch (typeId) {
+        case DECIMAL_MAP:
+            return new DecimalMap();
+        case LONG_MAP:
+            return new LongMap();
+        case BITMAP_MAP:
+            return new BitmapMap();
+        case BATCH_RESULT:
+            return new BatchResult();
+        case MEASURE_MAP:
+            return new MeasureMap();
+        case GROUP_DECIMAL_MAP:
+            return new GroupDecimalMap();
+        case GROUP_LONG_MAP:
+            return new GroupLongMap();
+        case STATE_MAP:
+            return new StateMap();
+        case SKETCH_MAP:
+            return new SketchMap();
+        case DIGEST_MAP:
+            return new DigestMap();
+        case HISTOGRAM_MAP:
+            return new HistogramMap();
+        case ESTIMATE_MAP:
+            return new EstimateMap();
+        case PLAN_MAP:
+            return new PlanMap();
+        default:
+            return null;
+        }
+    }
+    
+    // ------------------------------ Codec ------------------------------
+    
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    public static long readVarLong(DataInput in) throws IOException {
+        
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed var-long.");
+    }
+    
+    public static void writeZigZag(DataOutput out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+    
+    public static long readZigZag(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /**
+     * Write ascending ints as deltas, first one is zig-zag encoded.
+     */
+    public static void writeSortedInts(DataOutput out, int[] values) throws IOException {
+        
+        writeVarLong(out, values.length);
+        long prev = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0) {
+                writeZigZag(out, values[i]);
+            } else {
+                writeVarLong(out, (long) values[i] - prev);
+            }
+            prev = values[i];
+        }
+    }
+    
+    public static int[] readSortedInts(DataInput in) throws IOException {
+        
+        int[] values = new int[(int) readVarLong(in)];
+        long prev = 0;
+        for (int i = 0; i < values.length; i++) {
+            prev = i == 0 ? readZigZag(in) : prev + readVarLong(in);
+            values[i] = (int) prev;
+        }
+        return values;
+    }
+    
+    /**
+     * Write ascending longs as deltas, first one is zig-zag encoded. Delta is unsigned.
+     */
+    public static void writeSortedLongs(DataOutput out, long[] values) throws IOException {
+        
+        writeVarLong(out, values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0) {
+                writeZigZag(out, values[i]);
+            } else {
+                writeVarLong(out, values[i] - values[i - 1]);
+            }
+        }
+    }
+    
+    public static long[] readSortedLongs(DataInput in) throws IOException {
+        
+        long[] values = new long[(int) readVarLong(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i == 0 ? readZigZag(in) : values[i - 1] + readVarLong(in);
+        }
+        return values;
+    }
+    
+    public static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        
+        writeZigZag(out, value.scale());
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 64) {
+            out.writeBoolean(true);
+            writeZigZag(out, unscaled.longValue());
+        } else {
+            // Too big for long
+            out.writeBoolean(false);
+            byte[] bytes = unscaled.toByteArray();
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+    
+    public static BigDecimal readDecimal(DataInput in) throws IOException {
+        
+        int scale = (int) readZigZag(in);
+        if (in.readBoolean()) {
+            return BigDecimal.valueOf(readZigZag(in), scale);
+        }
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+    
+    public static void writeString(DataOutput out, String value) throws IOException {
+        
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    public static void writeStrings(DataOutput out, List<String> values) throws IOException {
+        
+        writeVarLong(out, values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+    
+    public static List<String> readStrings(DataInput in) throws IOException {
+        
+        int size = (int) readVarLong(in);
+        List<String> values = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+    
+    public static void writeHaving(DataOutput out, Having having) throws IOException {
+        
+        out.writeBoolean(having != null);
+        if (having != null) {
+            out.writeByte(having.getOp().ordinal());
+            writeDecimal(out, having.getValue());
+        }
+    }
+    
+    public static Having readHaving(DataInput in) throws IOException {
+        return in.readBoolean() ? new Having(Having.Operator.values()[in.readByte()], readDecimal(in)) : null;
+    }
+    
+    /**
+     * Filter values of one dimension are OR-ed, so write them sorted. Range predicates on indicates of 
+     * {@link Filter} follow dimensions.
+     */
+    public static void writeFilter(DataOutput out, Map<String, List<Integer>> filterDims) throws IOException {
+        
+        if (filterDims == null) {
+            writeZigZag(out, -1);
+            return;
+        }
+        writeZigZag(out, filterDims.size());
+        for (Map.Entry<String, List<Integer>> e : filterDims.entrySet()) {
+            writeString(out, e.getKey());
+            if (e.getValue() == null) {
+                out.writeBoolean(false);
+                continue;
+            }
+            out.writeBoolean(true);
+            int[] values = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(values);
+            writeSortedInts(out, values);
+        }
+        Map<String, List<Having>> measures = Filter.measuresOf(filterDims);
+        writeZigZag(out, measures.size());
+        for (Map.Entry<String, List<Having>> e : measures.entrySet()) {
+            writeString(out, e.getKey());
+            writeZigZag(out, e.getValue().size());
+            for (Having having : e.getValue()) {
+                writeHaving(out, having);
+            }
+        }
+        Condition where = Filter.whereOf(filterDims);
+        out.writeBoolean(where != null);
+        if (where != null) {
+            writeCondition(out, where);
+        }
+    }
+    
+    private static void writeCondition(DataOutput out, Condition condition) throws IOException {
+        
+        writeVarLong(out, condition.getOp().ordinal());
+        writeString(out, condition.getDimName());
+        List<Integer> values = condition.getValues();
+        writeZigZag(out, values == null ? -1 : values.size());
+        if (values != null) {
+            for (Integer v : values) {
+                writeZigZag(out, v);
+            }
+        }
+        List<Condition> children = condition.getChildren();
+        writeZigZag(out, children == null ? -1 : children.size());
+        if (children != null) {
+            for (Condition c : children) {
+                writeCondition(out, c);
+            }
+        }
+    }
+    
+    private static Condition readCondition(DataInput in) throws IOException {
+        
+        Condition condition = new Condition();
+        condition.setOp(Condition.Op.values()[(int) readVarLong(in)]);
+        condition.setDimName(readString(in));
+        int size = (int) readZigZag(in);
+        if (size >= 0) {
+            List<Integer> values = new ArrayList<Integer>(size);
+            for (int i = 0; i < size; i++) {
+                values.add((int) readZigZag(in));
+            }
+            condition.setValues(values);
+        }
+        size = (int) readZigZag(in);
+        if (size >= 0) {
+            List<Condition> children = new ArrayList<Condition>(size);
+            for (int i = 0; i < size; i++) {
+                children.add(readCondition(in));
+            }
+            condition.setChildren(children);
+        }
+        return condition;
+    }
+    
+    public static Map<String, List<Integer>> readFilter(DataInput in) throws IOException {
+        
+        int size = (int) readZigZag(in);
+        if (size < 0) {
+            return null;
+        }
+        Map<String, List<Integer>> filterDims = new HashMap<String, List<Integer>>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String name = readString(in);
+            List<Integer> values = null;
+            if (in.readBoolean()) {
+                values = Arrays.stream(readSortedInts(in)).boxed().collect(Collectors.toList());
+            }
+            filterDims.put(name, values);
+        }
+        Filter filter = new Filter(filterDims);
+        int measures = (int) readZigZag(in);
+        for (int i = 0; i < measures; i++) {
+            String indName = readString(in);
+            int predicates = (int) readZigZag(in);
+            for (int j = 0; j < predicates; j++) {
+                filter.measure(indName, readHaving(in));
+            }
+        }
+        if (in.readBoolean()) {
+            filter.where(readCondition(in));
+        }
+        return Filter.isPlain(filter) ? filterDims : filter;
+    }
+    
+    private static int[] sortedKeys(Map<Integer, ?> map) {
+        
+        int[] keys = map.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(keys);
+        return keys;
+    }
+    
+    /**
+     * Keys are sorted and every dimension value is written as delta from value of previous key.
+     */
+    private static GroupKey[] writeGroupKeys(DataOutput out, Map<GroupKey, ?> map) throws IOException {
+        
+        GroupKey[] keys = map.keySet().toArray(new GroupKey[0]);
+        Arrays.sort(keys);
+        writeVarLong(out, keys.length);
+        if (keys.length > 0) {
+            int size = keys[0].size();
+            writeVarLong(out, size);
+            long[] previous = new long[size];
+            for (GroupKey k : keys) {
+                for (int i = 0; i < size; i++) {
+                    writeZigZag(out, k.get(i) - previous[i]);
+                    previous[i] = k.get(i);
+                }
+            }
+        }
+        return keys;
+    }
+    
+    private static GroupKey[] readGroupKeys(DataInput in) throws IOException {
+        
+        GroupKey[] keys = new GroupKey[(int) readVarLong(in)];
+        if (keys.length > 0) {
+            int[] values = new int[(int) readVarLong(in)];
+            for (int j = 0; j < keys.length; j++) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] += (int) readZigZag(in);
+                }
+                keys[j] = GroupKey.of(values);
+            }
+        }
+        return keys;
+    }
+    
+    // ------------------------------ Results ------------------------------
+    
+    /**
+     * Group-by sum result.
+     * @author mengran
+     *
+     */
+    public static class DecimalMap extends HashMap<Integer, BigDecimal> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public DecimalMap() {
+            super();
+        }
+        
+        public DecimalMap(Map<Integer, BigDecimal> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            for (int k : keys) {
+                writeDecimal(out, get(k));
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int[] keys = readSortedInts(in);
+            for (int k : keys) {
+                put(k, readDecimal(in));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return DECIMAL_MAP;
+        }
+    }
+    
+    /**
+     * Group-by count result.
+     * @author mengran
+     *
+     */
+    public static class LongMap extends HashMap<Integer, Long> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public LongMap() {
+            super();
+        }
+        
+        public LongMap(Map<Integer, Long> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            for (int k : keys) {
+                writeZigZag(out, get(k));
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int[] keys = readSortedInts(in);
+            for (int k : keys) {
+                put(k, readZigZag(in));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return LONG_MAP;
+        }
+    }
+    
+    /**
+     * Group-by distinct result.
+     * @author mengran
+     *
+     */
+    public static class BitmapMap extends HashMap<Integer, RoaringBitmap> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public BitmapMap() {
+            super();
+        }
+        
+        public BitmapMap(Map<Integer, RoaringBitmap> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            for (int k : keys) {
+                get(k).serialize(out);
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int[] keys = readSortedInts(in);
+            for (int k : keys) {
+                RoaringBitmap bitmap = new RoaringBitmap();
+                bitmap.deserialize(in);
+                put(k, bitmap);
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return BITMAP_MAP;
+        }
+    }
+    
+    /**
+     * Multi-dimensions group-by sum result, key is {@link GroupKey} of dimension values.
+     * @author mengran
+     *
+     */
+    public static class GroupDecimalMap extends HashMap<GroupKey, BigDecimal> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public GroupDecimalMap() {
+            super();
+        }
+        
+        public GroupDecimalMap(Map<GroupKey, BigDecimal> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            for (GroupKey k : writeGroupKeys(out, this)) {
+                writeDecimal(out, get(k));
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            for (GroupKey k : readGroupKeys(in)) {
+                put(k, readDecimal(in));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return GROUP_DECIMAL_MAP;
+        }
+    }
+    
+    /**
+     * Multi-dimensions group-by count result, key is {@link GroupKey} of dimension values.
+     * @author mengran
+     *
+     */
+    public static class GroupLongMap extends HashMap<GroupKey, Long> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public GroupLongMap() {
+            super();
+        }
+        
+        public GroupLongMap(Map<GroupKey, Long> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            for (GroupKey k : writeGroupKeys(out, this)) {
+                writeZigZag(out, get(k));
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            for (GroupKey k : readGroupKeys(in)) {
+                put(k, readZigZag(in));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return GROUP_LONG_MAP;
+        }
+    }
+    
+    /**
+     * Partial states of measures of every group, see {@link Measure#states(List)}. Min and max maybe 
+     * <code>null</code>.
+     * @author mengran
+     *
+     */
+    public static class StateMap extends HashMap<Integer, BigDecimal[]> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public StateMap() {
+            super();
+        }
+        
+        public StateMap(Map<Integer, BigDecimal[]> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            writeVarLong(out, keys.length == 0 ? 0 : get(keys[0]).length);
+            for (int k : keys) {
+                for (BigDecimal v : get(k)) {
+                    out.writeBoolean(v != null);
+                    if (v != null) {
+                        writeDecimal(out, v);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int[] keys = readSortedInts(in);
+            int size = (int) readVarLong(in);
+            for (int k : keys) {
+                BigDecimal[] values = new BigDecimal[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = in.readBoolean() ? readDecimal(in) : null;
+                }
+                put(k, values);
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return STATE_MAP;
+        }
+    }
+    
+    /**
+     * Sketch of small group has few non-zero registers, write them as index deltas and values instead of all.
+     */
+    public static void writeSketch(DataOutput out, HyperLogLog sketch) throws IOException {
+        
+        byte[] registers = sketch.getRegisters();
+        int nonZeros = 0;
+        for (byte r : registers) {
+            nonZeros += r == 0 ? 0 : 1;
+        }
+        out.writeByte(sketch.getPrecision());
+        boolean sparse = nonZeros * 3 < registers.length;
+        out.writeBoolean(sparse);
+        if (!sparse) {
+            out.write(registers);
+            return;
+        }
+        writeVarLong(out, nonZeros);
+        int last = 0;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                writeVarLong(out, i - last);
+                out.writeByte(registers[i]);
+                last = i;
+            }
+        }
+    }
+    
+    public static HyperLogLog readSketch(DataInput in) throws IOException {
+        
+        int precision = in.readByte();
+        byte[] registers = new byte[1 << precision];
+        if (!in.readBoolean()) {
+            in.readFully(registers);
+        } else {
+            int nonZeros = (int) readVarLong(in);
+            int last = 0;
+            for (int i = 0; i < nonZeros; i++) {
+                last += (int) readVarLong(in);
+                registers[last] = in.readByte();
+            }
+        }
+        return new HyperLogLog(precision, registers);
+    }
+    
+    /**
+     * Group-by sketch result of approximate distinct-count.
+     * @author mengran
+     *
+     */
+    public static class SketchMap extends HashMap<Integer, HyperLogLog> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public SketchMap() {
+            super();
+        }
+        
+        public SketchMap(Map<Integer, HyperLogLog> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            for (int k : keys) {
+                writeSketch(out, get(k));
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            for (int k : readSortedInts(in)) {
+                put(k, readSketch(in));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return SKETCH_MAP;
+        }
+    }
+    
+    public static void writeDigest(DataOutput out, TDigest digest) throws IOException {
+        
+        double[] means = digest.getMeans();
+        long[] weights = digest.getWeights();
+        out.writeDouble(digest.getCompression());
+        out.writeDouble(digest.getMin());
+        out.writeDouble(digest.getMax());
+        writeVarLong(out, means.length);
+        for (int i = 0; i < means.length; i++) {
+            out.writeDouble(means[i]);
+            writeVarLong(out, weights[i]);
+        }
+    }
+    
+    public static TDigest readDigest(DataInput in) throws IOException {
+        
+        double compression = in.readDouble();
+        double min = in.readDouble();
+        double max = in.readDouble();
+        int size = (int) readVarLong(in);
+        double[] means = new double[size];
+        long[] weights = new long[size];
+        for (int i = 0; i < size; i++) {
+            means[i] = in.readDouble();
+            weights[i] = readVarLong(in);
+        }
+        return new TDigest(compression, min, max, means, weights);
+    }
+    
+    /**
+     * Group-by digest result of approximate quantiles.
+     * @author mengran
+     *
+     */
+    public static class DigestMap extends HashMap<Integer, TDigest> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public DigestMap() {
+            super();
+        }
+        
+        public DigestMap(Map<Integer, TDigest> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            for (int k : keys) {
+                writeDigest(out, get(k));
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            for (int k : readSortedInts(in)) {
+                put(k, readDigest(in));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return DIGEST_MAP;
+        }
+    }
+    
+    /**
+     * Group-by histogram result, counts of bins.
+     * @author mengran
+     *
+     */
+    public static class HistogramMap extends HashMap<Integer, long[]> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public HistogramMap() {
+            super();
+        }
+        
+        public HistogramMap(Map<Integer, long[]> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            writeVarLong(out, keys.length == 0 ? 0 : get(keys[0]).length);
+            for (int k : keys) {
+                for (long v : get(k)) {
+                    writeVarLong(out, v);
+                }
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int[] keys = readSortedInts(in);
+            int size = (int) readVarLong(in);
+            for (int k : keys) {
+                long[] values = new long[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = readVarLong(in);
+                }
+                put(k, values);
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return HISTOGRAM_MAP;
+        }
+    }
+    
+    /**
+     * Group-by estimate result of approximate sum or count.
+     * @author mengran
+     *
+     */
+    public static class EstimateMap extends HashMap<Integer, Estimate> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public EstimateMap() {
+            super();
+        }
+        
+        public EstimateMap(Map<Integer, Estimate> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            int[] keys = sortedKeys(this);
+            writeSortedInts(out, keys);
+            for (int k : keys) {
+                Estimate e = get(k);
+                out.writeDouble(e.doubleValue());
+                out.writeDouble(e.getVariance());
+                writeVarLong(out, e.getRows());
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            for (int k : readSortedInts(in)) {
+                put(k, new Estimate(in.readDouble(), in.readDouble(), readVarLong(in)));
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return ESTIMATE_MAP;
+        }
+    }
+    
+    /**
+     * Plans of cubes, key is cube ID.
+     * @author mengran
+     *
+     */
+    public static class PlanMap extends LinkedHashMap<String, Plan> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public PlanMap() {
+            super();
+        }
+        
+        public PlanMap(Map<String, Plan> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            writeVarLong(out, size());
+            for (Map.Entry<String, Plan> e : entrySet()) {
+                writeString(out, e.getKey());
+                Plan plan = e.getValue();
+                out.writeByte(plan.getAccess().ordinal());
+                out.writeBoolean(plan.isParallel());
+                writeVarLong(out, plan.getParallelRows());
+                writeVarLong(out, plan.getTotalRows());
+                writeVarLong(out, plan.getEstimatedRows());
+                out.writeBoolean(plan.isExact());
+                writeStrings(out, plan.getSteps());
+                writeStrings(out, plan.getIndexOnly());
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int size = (int) readVarLong(in);
+            for (int i = 0; i < size; i++) {
+                String cubeId = readString(in);
+                Plan plan = new Plan();
+                plan.setAccess(Plan.Access.values()[in.readByte()]);
+                plan.setParallel(in.readBoolean());
+                plan.setParallelRows(readVarLong(in));
+                plan.setTotalRows(readVarLong(in));
+                plan.setEstimatedRows(readVarLong(in));
+                plan.setExact(in.readBoolean());
+                plan.setSteps(readStrings(in));
+                plan.setIndexOnly(readStrings(in));
+                put(cubeId, plan);
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return PLAN_MAP;
+        }
+    }
+    
+    /**
+     * Multi-measure result, indicate name to result of it which is written by its own serializer.
+     * @author mengran
+     *
+     */
+    public static class MeasureMap extends LinkedHashMap<String, Object> implements IdentifiedDataSerializable {
+
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 1L;
+        
+        public MeasureMap() {
+            super();
+        }
+        
+        public MeasureMap(Map<String, ?> m) {
+            super(m);
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            writeVarLong(out, size());
+            for (Map.Entry<String, Object> e : entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeObject(e.getValue());
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int size = (int) readVarLong(in);
+            for (int i = 0; i < size; i++) {
+                put(in.readUTF(), in.readObject());
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return MEASURE_MAP;
+        }
+    }
+    
+    /**
+     * Results of batch, every one is written by its own serializer.
+     * @author mengran
+     *
+     */
+    public static class BatchResult implements IdentifiedDataSerializable {
+        
+        private Object[] results;
+        
+        public BatchResult() {
+            super();
+        }
+        
+        public BatchResult(Object[] results) {
+            super();
+            this.results = results;
+        }
+        
+        public Object[] getResults() {
+            return results;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            writeVarLong(out, results.length);
+            for (Object r : results) {
+                out.writeObject(r);
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            results = new Object[(int) readVarLong(in)];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = in.readObject();
+            }
+        }
+
+        @Override
+        public int getFactoryId() {
+            return FACTORY_ID;
+        }
+
+        @Override
+        public int getId() {
+            return BATCH_RESULT;
+        }
+    }
+    
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.cluster;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Result of one execution on cluster, tell which cubes contributed to it.
+ *
+ * <p>Execution will not wait for ever, so result maybe <b>partial</b> when some cubes did not answer in time.
+ * @author mengran
+ *
+ * @param <R> result type
+ * @since 0.3
+ */
+public class ExecutionResult<R> {
+
+    private R result;
+
+    /**
+     * Cube IDs that answered and merged into {@link #result}.
+     */
+    private List<String> contributors;
+
+    /**
+     * Cube IDs of replica which answered instead of slow or failed one.
+     */
+    private List<String> hedged;
+
+    /**
+     * Cube IDs which did not answer in time, means {@link #result} is partial.
+     */
+    private List<String> missing;
+
+    public ExecutionResult(R result, List<String> contributors, List<String> hedged, List<String> missing) {
+        super();
+        this.result = result;
+        this.contributors = contributors;
+        this.hedged = hedged;
+        this.missing = missing;
+    }
+
+    public R getResult() {
+        return result;
+    }
+
+    public List<String> getContributors() {
+        return contributors;
+    }
+
+    public List<String> getHedged() {
+        return hedged;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    public boolean isPartial() {
+        return !missing.isEmpty();
+    }
+
+    /**
+     * @param mapper convert result
+     * @param <U> new result type
+     * @return new execution result with same contributors.
+     */
+    public <U> ExecutionResult<U> map(Function<R, U> mapper) {
+        return new ExecutionResult<U>(mapper.apply(result), contributors, hedged, missing);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionResult [contributors=" + contributors + ", hedged=" + hedged + ", missing=" + missing + "]";
+    }
+
+}
@@ -17,11 +17,14 @@ package com.github.totyumengr.minicubes.cluster;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
 import com.github.totyumengr.minicubes.core.Aggregations;
 import com.github.totyumengr.minicubes.core.MiniCube;
+import com.github.totyumengr.minicubes.core.Plan;
 
 /**
  * It's design as a prophet in {@link MiniCube Cube World} that known all of things about {@link MiniCube MiniCubes}.
@@ -63,6 +66,16 @@ public interface TimeSeriesMiniCubeManager extends Aggregations {
      */
     String reassignRole(String cubeId, String timeSeries);
     
+    /**
+     * Plan assignment of time-series by capacity that members advertised (heap, cores and measured scan throughput) 
+     * and estimated size of every time-series, then re-assign roles which are different from plan. 
+     * Current assigned time-series will be re-balanced too.
+     * @param timeSeries new roles to place, empty means only re-balance.
+     * @return new cube IDs of members which have been re-assigned.
+     * @since 0.3
+     */
+    Collection<String> autoAssign(String... timeSeries);
+    
     /**
      * Incremental updates cube data of given time-series.
      * @param timeSeries role
@@ -80,6 +93,34 @@ public interface TimeSeriesMiniCubeManager extends Aggregations {
      */
     <T> List<T> execute(Callable<T> task, Collection<String> cubeIds, int timeoutSeconds);
     
+    /**
+     * Execute on <b>one</b> cube of every time-series, cubes of same time-series are replicas. When a cube has not 
+     * answered within a percentile of recent latencies, re-submit to its replica and take the first answer.
+     * @param task execute target
+     * @param <T> result type
+     * @param cubeIds execution on. Empty means <b>all members</b>
+     * @param timeoutSeconds timeout seconds. &lt;=0 will be reuse {@link Integer#MAX_VALUE}
+     * @return result list of every time-series, and which cubes contributed. 
+     * @since 0.3
+     */
+    <T> ExecutionResult<List<T>> executeHedged(Callable<T> task, Collection<String> cubeIds, int timeoutSeconds);
+    
+    /**
+     * Same as {@link #executeHedged(Callable, Collection, int)}, but merge answer of every time-series into 
+     * accumulator as soon as it arrives, so reduction overlaps with waiting for others. 
+     * @param task execute target
+     * @param <T> result type
+     * @param <R> accumulator type
+     * @param cubeIds execution on. Empty means <b>all members</b>
+     * @param timeoutSeconds timeout seconds. &lt;=0 will be reuse {@link Integer#MAX_VALUE}
+     * @param accumulator merge into, must be <b>thread-safe</b> because answers are merged concurrently
+     * @param merger merge one answer into accumulator
+     * @return accumulator, and which cubes contributed. Answers arrived after return will not be merged.
+     * @since 0.3
+     */
+    <T, R> ExecutionResult<R> executeHedged(Callable<T> task, Collection<String> cubeIds, int timeoutSeconds,
+            R accumulator, BiConsumer<R, T> merger);
+    
     /**
      * This is a stateful, wrapper method. Directly call {@link Aggregations}'s method means execute in <b>local</b> node.
      * So if you want to run in cluster, you <b>must</b> call this method first.
@@ -89,7 +130,35 @@ public interface TimeSeriesMiniCubeManager extends Aggregations {
     TimeSeriesMiniCubeManager aggs(String... timeSeries);
     
     /**
-     * @param parallelModel specify Java8 Stream mode.
+     * Non-blocking aggregations on given time-series, which does not depend on calling thread like 
+     * {@link #aggs(String...)}.
+     * @param timeSeries set execution on, empty means all cubes
+     * @return aggregation object
+     * @since 0.3
+     */
+    AsyncAggregations async(String... timeSeries);
+    
+    /**
+     * Run many aggregations in one round trip of cluster, aggregations which have same filter dimensions share one 
+     * filtering on every cube. This is a stateful method same to aggregations, see {@link #aggs(String...)}.
+     * @param specs aggregations
+     * @return result of every spec in order, type is same to the one of corresponding {@link Aggregations}'s method.
+     * @since 0.3
+     */
+    List<Object> batch(List<AggregationSpec> specs);
+    
+    /**
+     * Plan of every cube for given filter, for tuning of dashboards. This is a stateful method same to aggregations,
+     * see {@link #aggs(String...)}.
+     * @param filterDims filter dimensions
+     * @return plan of every cube, key is cube ID
+     * @since 0.3
+     */
+    Map<String, Plan> explain(Map<String, List<Integer>> filterDims);
+    
+    /**
+     * @param parallelModel specify Java8 Stream mode, <code>true</code> chooses sequential or parallel of every query 
+     * by its rows and observed timings, <code>false</code> always uses sequential.
      * {@link Stream#isParallel()}
      */
     void setMode(boolean parallelModel);
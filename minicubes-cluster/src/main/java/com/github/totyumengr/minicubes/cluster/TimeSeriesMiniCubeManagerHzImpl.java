@@ -15,6 +15,7 @@
  */
 package com.github.totyumengr.minicubes.cluster;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.sql.Connection;
@@ -25,21 +26,37 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiFunction;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
@@ -56,6 +73,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.core.SqlTypeValue;
@@ -65,8 +83,29 @@ import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.BatchResult;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.BitmapMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.DecimalMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.DigestMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.GroupDecimalMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.GroupLongMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.EstimateMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.HistogramMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.PlanMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.LongMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.MeasureMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.SketchMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.StateMap;
+import com.github.totyumengr.minicubes.cluster.TimeSeriesAssignmentPlanner.MemberCapacity;
+import com.github.totyumengr.minicubes.core.Estimate;
 import com.github.totyumengr.minicubes.core.FactTable.FactTableBuilder;
+import com.github.totyumengr.minicubes.core.GroupKey;
+import com.github.totyumengr.minicubes.core.Having;
+import com.github.totyumengr.minicubes.core.HyperLogLog;
+import com.github.totyumengr.minicubes.core.Measure;
 import com.github.totyumengr.minicubes.core.MiniCube;
+import com.github.totyumengr.minicubes.core.Plan;
+import com.github.totyumengr.minicubes.core.TDigest;
 import com.hazelcast.config.Config;
 import com.hazelcast.config.ExecutorConfig;
 import com.hazelcast.config.GroupConfig;
@@ -76,15 +115,20 @@ import com.hazelcast.config.ManagementCenterConfig;
 import com.hazelcast.config.MulticastConfig;
 import com.hazelcast.config.NetworkConfig;
 import com.hazelcast.config.TcpIpConfig;
+import com.hazelcast.core.ExecutionCallback;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.core.IExecutorService;
 import com.hazelcast.core.IMap;
 import com.hazelcast.core.Member;
 import com.hazelcast.core.MemberAttributeEvent;
 import com.hazelcast.core.MembershipEvent;
 import com.hazelcast.core.MembershipListener;
-import com.hazelcast.core.MultiExecutionCallback;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 /**
  * Implementation beyond {@link Hazelcast}.
@@ -110,6 +154,8 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
     
     private static final ThreadLocal<String[]> AGG_CONTEXT = new ThreadLocal<String[]>();
     
+    private static final int LATENCY_WINDOW_SIZE = 1000;
+    
     @Autowired
     private Environment env;
     
@@ -119,6 +165,12 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
     private String hzGroupName;
     @Value("${hazelcast.executor.timeout}")
     private int hzExecutorTimeout;
+    @Value("${hazelcast.executor.hedge.enabled}")
+    private boolean hedgeEnabled;
+    @Value("${hazelcast.executor.hedge.percentile}")
+    private double hedgePercentile;
+    @Value("${hazelcast.executor.hedge.minDelay}")
+    private long hedgeMinDelay;
     
     @Autowired
     private DataSource dataSource;
@@ -128,6 +180,14 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
     private String factSourceSql;
     @Value("${minicube.measure.fromIndex}")
     private int splitIndex = -1;
+    @Value("${minicube.builder.partitionDim}")
+    private String partitionDim;
+    @Value("${minicube.builder.sampleRate}")
+    private double sampleRate = FactTableBuilder.DEFAULT_SAMPLE_RATE;
+    @Value("${minicube.assign.recordsPerMb}")
+    private int recordsPerMb;
+    @Value("${minicube.assign.rebalanceThreshold}")
+    private double rebalanceThreshold;
     
     /**
      * Manage target object.
@@ -137,6 +197,23 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
     
     private ScheduledExecutorService handleNewMember = Executors.newSingleThreadScheduledExecutor();
     
+    /**
+     * Fire hedged attempts, timeouts and expiry of top-N sum groups only.
+     */
+    private ScheduledExecutorService hedgeScheduler = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * Collect answers of units and merge results of caller.
+     */
+    private ExecutorService collector = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private Map<String, LatencyWindow> taskLatencies = new ConcurrentHashMap<String, LatencyWindow>();
+    private Map<String, LatencyWindow> memberLatencies = new ConcurrentHashMap<String, LatencyWindow>();
+    /**
+     * Whole groups of cube which are aggregated by 1st phase of running top-N sums, key is id of query.
+     */
+    private Map<String, PhaseGroup> topSumGroups = new ConcurrentHashMap<String, PhaseGroup>();
+    
+    private volatile Routing routing = new Routing(Collections.<Member>emptySet());
+    
     @Bean
     public HazelcastInstance hazelcastServer() {
         
@@ -177,6 +254,10 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
         hazelcastConfig.addExecutorConfig(new ExecutorConfig(DISTRIBUTED_EXECUTOR, hzExecutorSize)
             .setQueueCapacity(env.getRequiredProperty("hazelcast.executor.queuecapacity", Integer.class)));
         
+        // Compact serialization of tasks and results
+        hazelcastConfig.getSerializationConfig().addDataSerializableFactory(CompactSerialization.FACTORY_ID, 
+                new ExecuteeFactory());
+        
         // Add member event listener
         hazelcastConfig.addListenerConfig(new ListenerConfig().setImplementation(new MembershipListener() {
             
@@ -188,13 +269,17 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
                 
                 IMap<String, String> miniCubeManager = hazelcastInstance.getMap(MINICUBE_MANAGER);
                 LOGGER.info("Minicube manager status {}", ObjectUtils.getDisplayString(miniCubeManager.entrySet()));
+                refreshRouting(membershipEvent.getCluster().getMembers());
                 
                 // FIXME: Schedule to remove relationship after "long disconnect".
             }
             
             @Override
             public void memberAttributeChanged(MemberAttributeEvent memberAttributeEvent) {
-                // Let it empty.
+                // Only cube ID effects routing.
+                if ("cubeId".equals(memberAttributeEvent.getKey())) {
+                    refreshRouting(memberAttributeEvent.getCluster().getMembers());
+                }
             }
             
             @Override
@@ -202,12 +287,18 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
                 // Mean a member join into cluster.
                 LOGGER.info("A member {} has joined into cluster {}, let it's self to claim a role.", 
                         membershipEvent.getMember(), membershipEvent.getCluster().getClusterTime());
+                refreshRouting(membershipEvent.getCluster().getMembers());
             }
         }));
         
         HazelcastInstance instance = Hazelcast.newHazelcastInstance(hazelcastConfig);
         // Put execute context
         instance.getUserContext().put("this", TimeSeriesMiniCubeManagerHzImpl.this);
+        refreshRouting(instance.getCluster().getMembers());
+        
+        // Advertise capacity for auto-assignment
+        instance.getCluster().getLocalMember().setLongAttribute("heap", Runtime.getRuntime().maxMemory() / 1024 / 1024);
+        instance.getCluster().getLocalMember().setIntAttribute("cores", Runtime.getRuntime().availableProcessors());
         
         // Handle new member
         LOGGER.info("Handle new member {} came in after 1 minute.", instance.getCluster().getLocalMember());
@@ -247,79 +338,487 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
             member.setStringAttribute("cubeId", id);
             LOGGER.info("Add {} into cluster {}", id, hzGroupName);
         }
+        refreshRouting(instance.getCluster().getMembers());
         LOGGER.info("Set load-pending status to false, enable reassign feature on {}", member);
     }
     
     // ------------------------------ Implementation ------------------------------
 
+    /**
+     * Recent latencies (millisecond) window, for choosing primary cube and delay of hedged execution.
+     * @author mengran
+     *
+     */
+    private static class LatencyWindow {
+        
+        private final long[] samples;
+        private int index = 0;
+        private int size = 0;
+        /**
+         * Sorted copy of samples, it is sorted again only when queried after new samples.
+         */
+        private long[] sorted = new long[0];
+        private boolean stale = false;
+        
+        public LatencyWindow(int capacity) {
+            super();
+            this.samples = new long[capacity];
+        }
+        
+        public synchronized void record(long latency) {
+            samples[index] = latency;
+            index = (index + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            stale = true;
+        }
+        
+        /**
+         * @param percentile 0~100
+         * @return latency of given percentile, <code>-1</code> if no samples.
+         */
+        public synchronized long percentile(double percentile) {
+            if (size == 0) {
+                return -1;
+            }
+            if (stale) {
+                sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                stale = false;
+            }
+            int i = (int) Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.min(Math.max(i, 0), size - 1)];
+        }
+    }
+    
+    /**
+     * One execution unit: a time-series of aggregation whose cubes are replicas, otherwise a cube. Answer of unit is 
+     * merged into accumulator as soon as it arrives, so unit only hold result reference when waiting.
+     * @author mengran
+     *
+     */
+    private static class ExecutionUnit<T> {
+        
+        private List<String> cubeIds = new ArrayList<String>();
+        private List<Member> members = new ArrayList<Member>();
+        private CompletableFuture<Void> future = new CompletableFuture<Void>();
+        private AtomicInteger next = new AtomicInteger(0);
+        private AtomicInteger pending = new AtomicInteger(0);
+        private volatile int winner = -1;
+        /**
+         * Merge answer into accumulator, <code>false</code> if execution has been closed.
+         */
+        private Predicate<T> merger;
+        private volatile boolean merged = false;
+        
+        public ExecutionUnit(Predicate<T> merger) {
+            super();
+            this.merger = merger;
+        }
+        
+        public void add(String cubeId, Member member) {
+            cubeIds.add(cubeId);
+            members.add(member);
+        }
+        
+        public void sort(Comparator<Member> comparator) {
+            List<Integer> order = new ArrayList<Integer>(members.size());
+            for (int i = 0; i < members.size(); i++) {
+                order.add(i);
+            }
+            order.sort((x, y) -> comparator.compare(members.get(x), members.get(y)));
+            List<String> sortedCubeIds = new ArrayList<String>(cubeIds.size());
+            List<Member> sortedMembers = new ArrayList<Member>(members.size());
+            for (Integer i : order) {
+                sortedCubeIds.add(cubeIds.get(i));
+                sortedMembers.add(members.get(i));
+            }
+            cubeIds = sortedCubeIds;
+            members = sortedMembers;
+        }
+    }
+    
+    /**
+     * Snapshot of which member holds which cube, rebuilt when membership or cube ID of member changed. So dispatching 
+     * query is map lookup, instead of scanning attributes of all members.
+     * @author mengran
+     *
+     */
+    private static class Routing {
+        
+        /**
+         * Member's address to member
+         */
+        private final Map<String, Member> members = new LinkedHashMap<String, Member>();
+        /**
+         * Cube ID to member
+         */
+        private final Map<String, Member> cubes = new LinkedHashMap<String, Member>();
+        /**
+         * Time-series to cube IDs, sorted for prefix matching
+         */
+        private final NavigableMap<String, List<String>> timeSeries = new TreeMap<String, List<String>>();
+        
+        public Routing(Collection<Member> members) {
+            super();
+            for (Member m : members) {
+                this.members.put(m.getSocketAddress().toString(), m);
+                String cubeId = m.getStringAttribute("cubeId");
+                if (cubeId != null) {
+                    cubes.put(cubeId, m);
+                    timeSeries.computeIfAbsent(cubeId.split("::")[0], k -> new ArrayList<String>()).add(cubeId);
+                }
+            }
+        }
+        
+        /**
+         * @param prefix prefix of time-series
+         * @return cube IDs whose time-series starts with prefix
+         */
+        public List<String> cubeIds(String prefix) {
+            
+            List<String> cubeIds = new ArrayList<String>();
+            timeSeries.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values().forEach(cubeIds::addAll);
+            return cubeIds;
+        }
+        
+        @Override
+        public String toString() {
+            return "Routing [members=" + members.keySet() + ", timeSeries=" + timeSeries + "]";
+        }
+    }
+    
+    private void refreshRouting(Collection<Member> members) {
+        
+        routing = new Routing(members);
+        LOGGER.info("Refresh {}", routing);
+    }
+    
+    private LatencyWindow latencyWindow(Map<String, LatencyWindow> windows, String key) {
+        return windows.computeIfAbsent(key, k -> new LatencyWindow(LATENCY_WINDOW_SIZE));
+    }
+    
     @Override
     public <T> List<T> execute(Callable<T> task, Collection<String> cubeIds, int timeoutSeconds) {
         
-        Set<Member> members = hazelcastInstance.getCluster().getMembers();
-        Set<Member> selected = new LinkedHashSet<Member>();
+        // Every cube runs task, include replicas.
+        return join(submit(task, cubeIds, timeoutSeconds, false, false, 
+                Collections.synchronizedList(new ArrayList<T>()), List::add)).getResult();
+    }
+    
+    @Override
+    public <T> ExecutionResult<List<T>> executeHedged(Callable<T> task, Collection<String> cubeIds, int timeoutSeconds) {
+        
+        return executeHedged(task, cubeIds, timeoutSeconds, Collections.synchronizedList(new ArrayList<T>()), 
+                List::add);
+    }
+    
+    @Override
+    public <T, R> ExecutionResult<R> executeHedged(Callable<T> task, Collection<String> cubeIds, int timeoutSeconds,
+            R accumulator, BiConsumer<R, T> merger) {
+        
+        return join(submit(task, cubeIds, timeoutSeconds, hedgeEnabled, accumulator, merger));
+    }
+    
+    /**
+     * Wait for future and throw cause of failure.
+     */
+    private static <R> R join(CompletableFuture<R> future) {
+        
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Submit aggregation, cubes of same time-series are replicas and only one of them answers.
+     */
+    private <T, R> CompletableFuture<ExecutionResult<R>> submit(Callable<T> task, Collection<String> cubeIds, 
+            int timeoutSeconds, boolean hedge, R accumulator, BiConsumer<R, T> merger) {
+        
+        return submit(task, cubeIds, timeoutSeconds, true, hedge, accumulator, merger);
+    }
+    
+    /**
+     * Submit task and return immediately, returned future completes when all units answered or timeout.
+     * @param byTimeSeries group cubes of same time-series into one unit, replicas are tried one by one on failure
+     * @param hedge also try next replica when unit has not answered in recent latency percentile
+     */
+    private <T, R> CompletableFuture<ExecutionResult<R>> submit(Callable<T> task, Collection<String> cubeIds, 
+            int timeoutSeconds, boolean byTimeSeries, boolean hedge, R accumulator, BiConsumer<R, T> merger) {
+        
+        // Merge answers concurrently, and stop merging when complete so caller will not see late answers.
+        ReadWriteLock mergeLock = new ReentrantReadWriteLock();
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Predicate<T> merge = new Predicate<T>() {
+            @Override
+            public boolean test(T t) {
+                mergeLock.readLock().lock();
+                try {
+                    if (closed.get()) {
+                        return false;
+                    }
+                    merger.accept(accumulator, t);
+                    return true;
+                } finally {
+                    mergeLock.readLock().unlock();
+                }
+            }
+        };
+        
+        Routing routing = this.routing;
+        
+        // Group cubes into execution units, cubes of same time-series are replicas.
+        Map<String, ExecutionUnit<T>> units = new LinkedHashMap<String, ExecutionUnit<T>>();
+        List<String> missing = new ArrayList<String>();
         if (cubeIds != null && !cubeIds.isEmpty()) {
-            List<String> cubeNodes = cubeIds.stream().map(e -> e.split("@")[1]).collect(Collectors.toList());
-            for (Member m : members) {
-                if (cubeNodes.contains(m.getSocketAddress().toString())) {
-                    selected.add(m);
+            for (String cubeId : cubeIds) {
+                Member m = routing.cubes.get(cubeId);
+                if (m == null && routing == this.routing) {
+                    // Maybe attribute event has not arrived yet.
+                    refreshRouting(hazelcastInstance.getCluster().getMembers());
+                    routing = this.routing;
+                    m = routing.cubes.get(cubeId);
+                }
+                if (m == null) {
+                    LOGGER.warn("Cube {} is not in cluster now.", cubeId);
+                    continue;
+                }
+                String key = byTimeSeries ? cubeId.split("::")[0] : cubeId;
+                units.computeIfAbsent(key, k -> new ExecutionUnit<T>(merge)).add(cubeId, m);
+            }
+            for (String cubeId : cubeIds) {
+                if (!units.containsKey(byTimeSeries ? cubeId.split("::")[0] : cubeId)) {
+                    missing.add(cubeId);
                 }
             }
         } else {
-            selected.addAll(members);
-            LOGGER.warn("Select all members {} in cluster to execute on.", selected);
+            for (Entry<String, Member> e : routing.members.entrySet()) {
+                String cubeId = e.getValue().getStringAttribute("cubeId");
+                units.computeIfAbsent(e.getKey(), k -> new ExecutionUnit<T>(merge)).add(cubeId == null ? e.getKey() : cubeId, 
+                        e.getValue());
+            }
+            LOGGER.warn("Select all members {} in cluster to execute on.", units.keySet());
         }
         
-        final int size = selected.size();
-        LOGGER.debug("Start to run task {} on {}", task, selected);
+        LOGGER.debug("Start to run task {} on {}", task, units.keySet());
         
         // Call distributed execute service to run it.
-        final List<T> result = new ArrayList<T>(selected.size());
-        final List<Exception> exceptionResult = new ArrayList<Exception>();
-        CountDownLatch cdl = new CountDownLatch(1);
-        AtomicInteger completedCount = new AtomicInteger(0);
-        hazelcastInstance.getExecutorService(DISTRIBUTED_EXECUTOR).submitToMembers(task, selected,
-                new MultiExecutionCallback() {
-                    
-                    @SuppressWarnings("unchecked")
+        IExecutorService executorService = hazelcastInstance.getExecutorService(DISTRIBUTED_EXECUTOR);
+        String taskKey = task.getClass().getName();
+        long hedgeDelay = Math.max(latencyWindow(taskLatencies, taskKey).percentile(hedgePercentile), hedgeMinDelay);
+        for (ExecutionUnit<T> unit : units.values()) {
+            if (unit.members.size() > 1) {
+                // Primary is the one which has lowest median latency recently, members which have not answered yet
+                // (new or restarted) go last.
+                Map<String, Long> medians = new HashMap<String, Long>();
+                for (Member m : unit.members) {
+                    String address = m.getSocketAddress().toString();
+                    long median = latencyWindow(memberLatencies, address).percentile(50);
+                    medians.put(address, median < 0 ? Long.MAX_VALUE : median);
+                }
+                unit.sort(Comparator.comparingLong(m -> medians.get(m.getSocketAddress().toString())));
+            }
+            attempt(executorService, task, taskKey, unit);
+            if (hedge && unit.members.size() > 1) {
+                hedgeScheduler.schedule(new Runnable() {
                     @Override
-                    public void onResponse(Member member, Object value) {
-                        int i = completedCount.incrementAndGet();
-                        LOGGER.debug("Completed of {}/{}, {} and {}", i, size, member, value);
-                        if (value instanceof Exception) {
-                            exceptionResult.add((Exception) value);
-                        } else {
-                            result.add((T) value);
+                    public void run() {
+                        if (!unit.future.isDone() && attempt(executorService, task, taskKey, unit)) {
+                            LOGGER.info("{} has not answered {} in {}ms, hedge to replica.", unit.cubeIds.get(0), 
+                                    task, hedgeDelay);
                         }
                     }
-                    
-                    @Override
-                    public void onComplete(Map<Member, Object> values) {
-                        LOGGER.info("Successfully execute {} on cluster, collect {} result.", task, values.size());
-                        cdl.countDown();
-                    }
-                });
-        
-        if (completedCount.get() < size) {
-            // FIXME: When some task do not executed. Maybe reject? error?
+                }, hedgeDelay, TimeUnit.MILLISECONDS);
+            }
         }
         
+        // Wait all of units or timeout without blocking caller.
+        CompletableFuture<Void> all = CompletableFuture.allOf(units.values().stream().map(e -> e.future)
+                .toArray(CompletableFuture[]::new));
+        CompletableFuture<Void> deadline = new CompletableFuture<Void>();
+        ScheduledFuture<?> timeout = timeoutSeconds <= 0 ? null : hedgeScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (deadline.complete(null) && !all.isDone()) {
+                    LOGGER.warn("Timeout {}s when try to execute {}, return partial result.", timeoutSeconds, task);
+                }
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        
+        // Collect and what caller chains on it run on collector, so scheduler only fires timers.
+        return CompletableFuture.anyOf(all, deadline).handleAsync((v, t) -> {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            return collect(task, units, missing, accumulator, mergeLock, closed);
+        }, collector);
+    }
+    
+    private <T, R> ExecutionResult<R> collect(Callable<T> task, Map<String, ExecutionUnit<T>> units, 
+            List<String> missing, R accumulator, ReadWriteLock mergeLock, AtomicBoolean closed) {
+        
+        mergeLock.writeLock().lock();
         try {
-            cdl.await(timeoutSeconds > 0 ? timeoutSeconds : Integer.MAX_VALUE, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            // Ignore
+            closed.set(true);
+        } finally {
+            mergeLock.writeLock().unlock();
+        }
+        
+        final List<String> contributors = new ArrayList<String>(units.size());
+        final List<String> hedged = new ArrayList<String>();
+        final List<Throwable> exceptionResult = new ArrayList<Throwable>();
+        for (ExecutionUnit<T> unit : units.values()) {
+            if (unit.merged) {
+                contributors.add(unit.cubeIds.get(unit.winner));
+                if (unit.winner > 0) {
+                    hedged.add(unit.cubeIds.get(unit.winner));
+                }
+            } else if (unit.future.isCompletedExceptionally()) {
+                try {
+                    unit.future.join();
+                } catch (CompletionException e) {
+                    exceptionResult.add(e.getCause());
+                }
+            } else {
+                missing.add(unit.cubeIds.get(0));
+            }
         }
         
         // Exception handled
         if (!exceptionResult.isEmpty()) {
             LOGGER.error("{} exceptions occurred when try to execute {} on {}", exceptionResult.size(), task, 
-                    ObjectUtils.getDisplayString(selected));
+                    ObjectUtils.getDisplayString(units.keySet()));
             for (int i = 0; i < exceptionResult.size(); i++) {
                 LOGGER.error("#1 exception === ", exceptionResult.get(i));
             }
-            throw new RuntimeException("Exception occurred when try to execute, please see detail logs above.");
+            throw new RuntimeException("Exception occurred when try to execute, please see detail logs above.", 
+                    exceptionResult.get(0));
+        }
+        if (!missing.isEmpty()) {
+            LOGGER.warn("Cubes {} did not answer {}, result is partial.", missing, task);
         }
         
-        return result;
+        ExecutionResult<R> executionResult = new ExecutionResult<R>(accumulator, contributors, hedged, missing);
+        LOGGER.info("Successfully execute {} on cluster, {}", task, executionResult);
+        return executionResult;
+    }
+    
+    /**
+     * Submit task to next cube of unit.
+     * @return <code>false</code> if there is no more replica.
+     */
+    private <T> boolean attempt(IExecutorService executorService, Callable<T> task, String taskKey, 
+            ExecutionUnit<T> unit) {
+        
+        unit.pending.incrementAndGet();
+        int i = unit.next.getAndIncrement();
+        if (i >= unit.members.size()) {
+            unit.pending.decrementAndGet();
+            return false;
+        }
+        Member member = unit.members.get(i);
+        long start = System.currentTimeMillis();
+        executorService.submitToMember(task, member, new ExecutionCallback<T>() {
+            
+            @Override
+            public void onResponse(T response) {
+                long latency = System.currentTimeMillis() - start;
+                latencyWindow(taskLatencies, taskKey).record(latency);
+                latencyWindow(memberLatencies, member.getSocketAddress().toString()).record(latency);
+                LOGGER.debug("Completed {} of {} using {}ms", unit.cubeIds.get(i), response, latency);
+                synchronized (unit) {
+                    if (!unit.future.isDone()) {
+                        unit.winner = i;
+                        try {
+                            unit.merged = unit.merger.test(response);
+                            unit.future.complete(null);
+                        } catch (RuntimeException e) {
+                            unit.future.completeExceptionally(e);
+                        }
+                    }
+                }
+                // After completing, so failure of other replica will not fail the unit meanwhile.
+                unit.pending.decrementAndGet();
+            }
+            
+            @Override
+            public void onFailure(Throwable t) {
+                LOGGER.warn("Fail to execute {} on {}, fail-over to replica if has.", task, unit.cubeIds.get(i));
+                unit.pending.decrementAndGet();
+                // Fail-over to replica
+                if (!attempt(executorService, task, taskKey, unit)) {
+                    synchronized (unit) {
+                        if (!unit.future.isDone() && unit.pending.get() <= 0) {
+                            unit.future.completeExceptionally(t);
+                        }
+                    }
+                }
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * @param timeSeries role
+     * @return parameters of {@link #factSourceSql} for given time-series
+     */
+    private static List<SqlParameterValue> sqlParams(String timeSeries) {
+        
+        List<SqlParameterValue> params = new ArrayList<SqlParameterValue>();
+        if (timeSeries.length() == 8 && timeSeries.toUpperCase().contains("X")) {
+            // Means one XUN's data
+            String m = timeSeries.toUpperCase().split("X")[0];
+            int x = Integer.parseInt(timeSeries.toUpperCase().split("X")[1]);
+            Assert.isTrue(x > 0 && x < 4, "Only support pattern yyyymmX[1-3]. " + timeSeries);
+            int s = (x - 1) * 10 + 1;
+            SqlParameterValue start = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + (s > 9 ? s : ("0" + s)));
+            SqlParameterValue end = null;
+            switch (x) {
+            case 1:
+                end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + "10");
+                break;
+            case 2:
+                end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + "20");
+                break;
+            case 3:
+                end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + "31");
+                break;
+            default:
+                break;
+            }
+            params.add(start);
+            params.add(end);
+        } else if (timeSeries.length() == 8) {
+            // Means one day's data
+            SqlParameterValue v = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, timeSeries);
+            params.add(v);
+        } else if (timeSeries.length() == 6 && !timeSeries.toUpperCase().contains("Q")) {
+            // Means one month's data
+            SqlParameterValue start = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, timeSeries + "01");
+            SqlParameterValue end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, timeSeries + "31");
+            params.add(start);
+            params.add(end);
+        } else if (timeSeries.length() == 6 && timeSeries.toUpperCase().contains("Q")) {
+            // Means one Q's data
+            String y = timeSeries.toUpperCase().split("Q")[0];
+            int q = Integer.parseInt(timeSeries.toUpperCase().split("Q")[1]);
+            Assert.isTrue(q > 0 && q < 5, "Only support pattern yyyyQ[1-4]. " + timeSeries);
+            int m = ((q - 1) * 3 + 1);
+            // Fix #3
+            SqlParameterValue start = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, y + (m > 9 ?  m : ("0" + m)) + "01");
+            m = (q * 3);
+            SqlParameterValue end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, y + (m > 9 ? m : ("0" + m)) + "31");
+            params.add(start);
+            params.add(end);
+        } else {
+            throw new IllegalArgumentException("Only supported day or month format." + timeSeries);
+        }
+        return params;
     }
     
     private static abstract class CubeBuilder implements Callable<String>, HazelcastInstanceAware, Serializable {
@@ -335,6 +834,12 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
         protected String cubeId;
         protected String timeSeries;
         
+        /**
+         * Loaded records count and first measure name, used for measuring scan throughput.
+         */
+        protected transient int loadedRows;
+        protected transient String probeMeasure;
+        
         public CubeBuilder(String cubeId, String timeSeries) {
             super();
             this.cubeId = cubeId;
@@ -381,59 +886,11 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
             boolean builded = false;
             AtomicInteger rowCount = new AtomicInteger();
             try {
-                builder.build(timeSeries);
+                builder.build(timeSeries).sampleRate(impl.sampleRate);
                 AtomicBoolean processMeta = new AtomicBoolean(true);
                 AtomicInteger actualSplitIndex = new AtomicInteger();
                 
-                List<SqlParameterValue> params = new ArrayList<SqlParameterValue>();
-                if (timeSeries.length() == 8 && timeSeries.toUpperCase().contains("X")) {
-                    // Means one XUN's data
-                    String m = timeSeries.toUpperCase().split("X")[0];
-                    int x = Integer.parseInt(timeSeries.toUpperCase().split("X")[1]);
-                    Assert.isTrue(x > 0 && x < 4, "Only support pattern yyyymmX[1-3]. " + timeSeries);
-                    int s = (x - 1) * 10 + 1;
-                    SqlParameterValue start = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + (s > 9 ? s : ("0" + s)));
-                    SqlParameterValue end = null;
-                    switch (x) {
-                    case 1:
-                        end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + "10");
-                        break;
-                    case 2:
-                        end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + "20");
-                        break;
-                    case 3:
-                        end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, m + "31");
-                        break;
-                    default:
-                        break;
-                    }
-                    params.add(start);
-                    params.add(end);
-                } else if (timeSeries.length() == 8) {
-                    // Means one day's data
-                    SqlParameterValue v = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, timeSeries);
-                    params.add(v);
-                } else if (timeSeries.length() == 6 && !timeSeries.toUpperCase().contains("Q")) {
-                    // Means one month's data
-                    SqlParameterValue start = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, timeSeries + "01");
-                    SqlParameterValue end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, timeSeries + "31");
-                    params.add(start);
-                    params.add(end);
-                } else if (timeSeries.length() == 6 && timeSeries.toUpperCase().contains("Q")) {
-                    // Means one Q's data
-                    String y = timeSeries.toUpperCase().split("Q")[0];
-                    int q = Integer.parseInt(timeSeries.toUpperCase().split("Q")[1]);
-                    Assert.isTrue(q > 0 && q < 5, "Only support pattern yyyyQ[1-4]. " + timeSeries);
-                    int m = ((q - 1) * 3 + 1);
-                    // Fix #3
-                    SqlParameterValue start = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, y + (m > 9 ?  m : ("0" + m)) + "01");
-                    m = (q * 3);
-                    SqlParameterValue end = new SqlParameterValue(SqlTypeValue.TYPE_UNKNOWN, y + (m > 9 ? m : ("0" + m)) + "31");
-                    params.add(start);
-                    params.add(end);
-                } else {
-                    throw new IllegalArgumentException("Only supported day or month format." + timeSeries);
-                }
+                List<SqlParameterValue> params = sqlParams(timeSeries);
                 LOGGER.info("Start to fetch data {}", params.stream().map(
                         new Function<SqlParameterValue, Object>() {
                             @Override
@@ -479,6 +936,7 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
                                         } else {
                                             LOGGER.debug("Add measure column {}", meta.getColumnLabel(i));
                                             builder.addIndColumns(Arrays.asList(new String[] {meta.getColumnLabel(i)}));
+                                            probeMeasure = probeMeasure == null ? meta.getColumnLabel(i) : probeMeasure;
                                         }
                                     }
                                 } else {
@@ -491,6 +949,7 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
                                         } else {
                                             LOGGER.debug("Add measure column {}", meta.getColumnLabel(i));
                                             builder.addIndColumns(Arrays.asList(new String[] {meta.getColumnLabel(i)}));
+                                            probeMeasure = probeMeasure == null ? meta.getColumnLabel(i) : probeMeasure;
                                         }
                                     }
                                 }
@@ -524,6 +983,7 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
                 // Ending build operation
                 MiniCube newMiniCube = new MiniCube(builder.done());
                 builded = true;
+                loadedRows = rowCount.get();
                 
                 String newCubeId = post(newMiniCube);
                 
@@ -577,6 +1037,21 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
             String newCubeId = timeSeries + "::" + impl.hzGroupName + "@" + member;
             LOGGER.info("Success to build cube {} from {} and {}", newCubeId, cubeId, timeSeries);
             
+            // Measure scan throughput, first run is slow so we use second one. Sum of integral measure is answered 
+            // by bit-sliced index, so probe by multi-measures sum which always scans records.
+            if (probeMeasure != null && loadedRows > 0) {
+                List<String> probe = Arrays.asList(probeMeasure);
+                long timing = 0;
+                for (int i = 0; i < 2; i++) {
+                    timing = System.currentTimeMillis();
+                    newMiniCube.sum(probe, null);
+                    timing = System.currentTimeMillis() - timing;
+                }
+                localMember.setLongAttribute("throughput", loadedRows / Math.max(timing, 1));
+                LOGGER.info("Measure scan throughput {} records/ms of {}", loadedRows / Math.max(timing, 1), newCubeId);
+            }
+            localMember.setLongAttribute("cubeRecords", loadedRows);
+            
             // Put relationship into member
             localMember.setStringAttribute("cubeId", newCubeId);
             IMap<String, String> miniCubeManager = instance.getMap(MINICUBE_MANAGER);
@@ -605,6 +1080,94 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
         return result.get(0);
     }
     
+    @Override
+    public Collection<String> autoAssign(String... timeSeries) {
+        
+        LOGGER.info("Starting to auto-assign {}.", ObjectUtils.getDisplayString(timeSeries));
+        
+        List<MemberCapacity> capacities = new ArrayList<MemberCapacity>();
+        Map<String, String> memberCubeIds = new HashMap<String, String>();
+        Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+        for (Member m : hazelcastInstance.getCluster().getMembers()) {
+            String cubeId = m.getStringAttribute("cubeId");
+            if (cubeId == null) {
+                LOGGER.info("Skip member {} which has not claimed a role yet.", m);
+                continue;
+            }
+            String key = m.getSocketAddress().toString();
+            String holding = cubeId.startsWith("?") ? null : cubeId.split("::")[0];
+            Long heap = m.getLongAttribute("heap");
+            Integer cores = m.getIntAttribute("cores");
+            Long throughput = m.getLongAttribute("throughput");
+            capacities.add(new MemberCapacity(key, heap == null ? 0 : heap, cores == null ? 0 : cores, 
+                    throughput == null ? -1 : throughput, holding));
+            memberCubeIds.put(key, cubeId);
+            
+            if (holding != null && !sizes.containsKey(holding)) {
+                Long records = m.getLongAttribute("cubeRecords");
+                sizes.put(holding, records != null ? records : estimateSize(holding));
+            }
+        }
+        if (timeSeries != null) {
+            for (String t : timeSeries) {
+                if (!sizes.containsKey(t)) {
+                    sizes.put(t, estimateSize(t));
+                }
+            }
+        }
+        
+        TimeSeriesAssignmentPlanner planner = new TimeSeriesAssignmentPlanner(recordsPerMb, rebalanceThreshold);
+        Map<String, String> plan = planner.plan(capacities, sizes);
+        List<String> result = new ArrayList<String>();
+        if (!planner.needRebalance(capacities, sizes, plan)) {
+            LOGGER.info("Current assignment is good enough, do not need re-balance.");
+            return result;
+        }
+        
+        for (MemberCapacity c : capacities) {
+            String target = plan.get(c.getMember());
+            if (target != null && !target.equals(c.getTimeSeries())) {
+                result.add(reassignRole(memberCubeIds.get(c.getMember()), target));
+            }
+        }
+        // A member holds one cube and reassigning replaces it. Members left out of plan keep their cube, so a 
+        // time-series moved away from them is held twice and the stale one answers as replica, see #submit
+        
+        LOGGER.info("Successfully auto-assign {}", result);
+        return result;
+    }
+    
+    /**
+     * @param timeSeries role
+     * @return records count of given time-series in data source
+     */
+    private long estimateSize(String timeSeries) {
+        
+        List<SqlParameterValue> params = sqlParams(timeSeries);
+        String sql = "select count(*) from (" + factSourceSql + ") t";
+        Long count = new JdbcTemplate(dataSource).query(new PreparedStatementCreator() {
+            
+            @Override
+            public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+                
+                PreparedStatement stmt = con.prepareStatement(sql);
+                for (int i = 0; i < params.size(); i++) {
+                    StatementCreatorUtils.setParameterValue(stmt, i + 1, params.get(i), params.get(i).getValue());
+                }
+                return stmt;
+            }
+        }, new ResultSetExtractor<Long>() {
+            
+            @Override
+            public Long extractData(ResultSet rs) throws SQLException {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+        LOGGER.info("Estimate {} records of {}", count, timeSeries);
+        
+        return count;
+    }
+    
     private static class Merge extends CubeBuilder implements Callable<String>, HazelcastInstanceAware, Serializable {
 
         /**
@@ -629,6 +1192,10 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
             
             // Ending build operation
             impl.miniCube.merge(newMiniCube);
+            impl.topSumGroups.clear();
+            Member localMember = instance.getCluster().getLocalMember();
+            Long cubeRecords = localMember.getLongAttribute("cubeRecords");
+            localMember.setLongAttribute("cubeRecords", (cubeRecords == null ? 0 : cubeRecords) + loadedRows);
             
             LOGGER.info("Success to merge cube {} into {} of ", newMiniCube, impl.miniCube, timeSeries);
             return cubeId;
@@ -653,11 +1220,12 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
         try {
             Collection<String> cubeIds = cubeIds(timeSeries);
             
-            // FIXME: When support #3, this assert will be fail.
-            Assert.isTrue(cubeIds.size() == 1, "Current version have not support multiple cubes of one time-series.");
-            
-            // Do execute
-            List<String> results = execute(new Merge(cubeIds.iterator().next(), timeSeries, version), cubeIds, hzExecutorTimeout);
+            // Do execute on every replica
+            List<String> results = new ArrayList<String>(cubeIds.size());
+            for (String cubeId : cubeIds) {
+                results.addAll(execute(new Merge(cubeId, timeSeries, version), Arrays.asList(new String[] {cubeId}), 
+                        hzExecutorTimeout));
+            }
             LOGGER.info("Merge {} of {} sucessfully, result is {}.", timeSeries, version, results);
         } finally {
             AGG_CONTEXT.remove();
@@ -670,30 +1238,24 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
     @Override
     public Collection<String> allCubeIds() {
         
-        Set<Member> members = hazelcastInstance.getCluster().getMembers();
-        // Exact match
-        return members.stream().filter(e -> e.getStringAttribute("cubeId") != null)
-                .map(e -> e.getStringAttribute("cubeId")).collect(Collectors.toList());
+        return new ArrayList<String>(routing.cubes.keySet());
     }
 
     @Override
     public Collection<String> cubeIds(String cubeDate) {
         
-        Set<Member> members = hazelcastInstance.getCluster().getMembers();
-        // Exact match
-        return members.stream().filter(e -> e.getStringAttribute("cubeId").split("::")[0].startsWith(cubeDate))
-                .map(e -> e.getStringAttribute("cubeId")).collect(Collectors.toList());
+        // Prefix match
+        return routing.cubeIds(cubeDate);
     }
     
     private static class Mode extends Executee implements Callable<Void> {
         
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
-        
         private boolean parallelMode;
         
+        public Mode() {
+            super();
+        }
+        
         public Mode(boolean parallelMode) {
             super();
             this.parallelMode = parallelMode;
@@ -708,6 +1270,23 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
             }
             return null;
         }
+
+        @Override
+        public int getId() {
+            return MODE;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            out.writeBoolean(parallelMode);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            parallelMode = in.readBoolean();
+        }
         
     }
     
@@ -734,8 +1313,12 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
     
     private Set<String> cubeIds() {
         
+        return cubeIds(AGG_CONTEXT.get());
+    }
+    
+    private Set<String> cubeIds(String[] timeSeries) {
+        
         Set<String> cubeIds = new LinkedHashSet<String>();
-        String[] timeSeries = AGG_CONTEXT.get();
         if (timeSeries == null || timeSeries.length == 0) {
             cubeIds.addAll(allCubeIds());
         } else {
@@ -752,205 +1335,1949 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
         return cubeIds;
     }
     
-    private static abstract class Executee implements HazelcastInstanceAware, Serializable {
-
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
+    /**
+     * @return <code>true</code> when every group is on only one time-series, so answer of cube is final.
+     */
+    private boolean aligned(Set<String> cubeIds, String groupByDimName) {
         
-        protected transient HazelcastInstance instance;
-        protected transient TimeSeriesMiniCubeManagerHzImpl impl;
+        return groupByDimName.equals(partitionDim) || cubeIds.stream().map(e -> e.split("::")[0]).distinct().count() <= 1;
+    }
+    
+    // Merge answer of one time-series into accumulator, they may be called concurrently.
+    
+    /**
+     * @return N-th largest value of group
+     */
+    private static BigDecimal nth(Map<Integer, BigDecimal> group, int n) {
         
-        public Executee() {
+        return group.values().stream().sorted(Comparator.reverseOrder()).skip(n - 1).findFirst().get();
+    }
+    
+    /**
+     * Result of multiple executions, contributors are of last one.
+     */
+    private static <R> ExecutionResult<R> combine(R result, ExecutionResult<?>... executions) {
+        
+        Set<String> hedged = new LinkedHashSet<String>();
+        Set<String> missing = new LinkedHashSet<String>();
+        for (ExecutionResult<?> e : executions) {
+            hedged.addAll(e.getHedged());
+            missing.addAll(e.getMissing());
+        }
+        return new ExecutionResult<R>(result, executions[executions.length - 1].getContributors(), 
+                new ArrayList<String>(hedged), new ArrayList<String>(missing));
+    }
+    
+    private static <K> void mergeSum(Map<K, BigDecimal> result, Map<K, BigDecimal> t) {
+        if (t != null) {
+            t.forEach((k, v) -> result.merge(k, v, BigDecimal::add));
+        }
+    }
+    
+    private static <K> void mergeCount(Map<K, Long> result, Map<K, Long> t) {
+        if (t != null) {
+            t.forEach((k, v) -> result.merge(k, v, Long::sum));
+        }
+    }
+    
+    private static void mergeSketch(Map<Integer, HyperLogLog> result, Map<Integer, HyperLogLog> t) {
+        if (t != null) {
+            // Same to distinct, merge into first arrived one in place.
+            t.forEach((k, v) -> result.merge(k, v, HyperLogLog::merge));
+        }
+    }
+    
+    private static void mergeDigest(Map<Integer, TDigest> result, Map<Integer, TDigest> t) {
+        if (t != null) {
+            t.forEach((k, v) -> result.merge(k, v, TDigest::merge));
+        }
+    }
+    
+    private static void mergeHistogram(Map<Integer, long[]> result, Map<Integer, long[]> t) {
+        if (t != null) {
+            t.forEach((k, v) -> result.merge(k, v, MiniCube::add));
+        }
+    }
+    
+    private static void mergeEstimate(Map<Integer, Estimate> result, Map<Integer, Estimate> t) {
+        if (t != null) {
+            // Samples of cubes are disjoint, so values and variances are added.
+            t.forEach((k, v) -> result.merge(k, v, Estimate::merge));
+        }
+    }
+    
+    private static void mergeDistinct(Map<Integer, RoaringBitmap> result, Map<Integer, RoaringBitmap> t) {
+        if (t != null) {
+            // Answer is de-serialized copy, so OR into first arrived one in place.
+            t.forEach((k, v) -> result.merge(k, v, (x, y) -> {
+                x.or(y);
+                return x;
+            }));
+        }
+    }
+    
+    @Override
+    public AsyncAggregations async(String... timeSeries) {
+        
+        return new AsyncAggregationsImpl(timeSeries);
+    }
+    
+    /**
+     * Time-series are bound at creation instead of {@link #AGG_CONTEXT}, so it is free from calling thread.
+     * @author mengran
+     *
+     */
+    private class AsyncAggregationsImpl implements AsyncAggregations {
+        
+        private String[] timeSeries;
+        
+        public AsyncAggregationsImpl(String[] timeSeries) {
+            super();
+            this.timeSeries = timeSeries;
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<BigDecimal>> sum(String indName) {
+            
+            return sum(indName, (Map<String, List<Integer>>) null);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<BigDecimal>> sum(String indName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Sum(indName, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    new AtomicReference<BigDecimal>(new BigDecimal(0)), 
+                    (AtomicReference<BigDecimal> x, BigDecimal y) -> x.accumulateAndGet(y, BigDecimal::add))
+                .thenApply(results -> {
+                    BigDecimal result = results.getResult().get().setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP);
+                    LOGGER.info("Sum {} on {} result is {}", indName, results.getContributors(), result);
+                    return results.map(e -> result);
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, BigDecimal>>> sum(String indName, String groupByDimName,
+                Map<String, List<Integer>> filterDims) {
+            
+            return sum(indName, groupByDimName, filterDims, null);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, BigDecimal>>> sum(String indName, String groupByDimName,
+                Map<String, List<Integer>> filterDims, Having having) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            Having pushdown = having != null && aligned(cubeIds, groupByDimName) ? having : null;
+            
+            // Do execute
+            return submit(new Sum2(indName, groupByDimName, filterDims, pushdown), cubeIds, hzExecutorTimeout, 
+                    hedgeEnabled, (Map<Integer, BigDecimal>) new ConcurrentHashMap<Integer, BigDecimal>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeSum)
+                .thenApply(results -> {
+                    LOGGER.debug("Sum {} on {} with filter {} results is {}", indName, results.getContributors(), 
+                            filterDims, results.getResult());
+                    if (having != null && pushdown == null) {
+                        LOGGER.info("Apply {} after merging, groups are not aligned with time-series.", having);
+                        return results.map(e -> having.filter(e));
+                    }
+                    return results;
+                });
+        }
+
+        /**
+         * Three phases of <a href="http://dl.acm.org/citation.cfm?id=1011800">TPUT</a>, every cube answers a bounded
+         * candidate set instead of whole group: 
+         * <ol>
+         *   <li>Top-N of every cube, N-th of merged partial sums is lower bound <code>t</code> of N-th of result.
+         *   <li>Groups which sum &gt;= <code>t / m</code> on cube, groups can not reach lower bound are pruned by 
+         *   upper bound that not answered cubes contribute less than <code>t / m</code>.
+         *   <li>Exact sums of candidates.
+         * </ol>
+         * <p>Bounds need non-negative sums, cube refuses the 1st phase when it has negative sums, then fall back to 
+         * whole group. Other failures are not retried.
+         */
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, BigDecimal>>> topSum(String indName, 
+                String groupByDimName, Map<String, List<Integer>> filterDims, int limit) {
+            
+            Assert.isTrue(limit > 0, "Limit must greater than 0.");
+            Set<String> cubeIds = cubeIds(timeSeries);
+            // Replicas of time-series answer once, so there are as many partial sums as time-series.
+            int m = Math.max((int) cubeIds.stream().map(c -> c.split("::")[0]).distinct().count(), 1);
+            String queryId = UUID.randomUUID().toString();
+            
+            // 1st phase
+            return submit(new TopSum(queryId, indName, groupByDimName, filterDims, limit, null, null), cubeIds, 
+                    hzExecutorTimeout, hedgeEnabled, (Map<Integer, BigDecimal>) new ConcurrentHashMap<Integer, BigDecimal>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeSum)
+                .handle((first, t) -> {
+                    if (t != null) {
+                        dropTopSum(queryId, cubeIds);
+                        if (!canNotPrune(t)) {
+                            throw t instanceof CompletionException ? (CompletionException) t 
+                                    : new CompletionException(t);
+                        }
+                        LOGGER.warn("Can not prune top {} of sum {}, fall back to whole group.", limit, indName);
+                        return sum(indName, groupByDimName, filterDims)
+                                .thenApply(results -> results.map(e -> MiniCube.top(e, limit)));
+                    }
+                    if (first.getResult().size() < limit) {
+                        // Every cube answered its whole group.
+                        dropTopSum(queryId, cubeIds);
+                        return CompletableFuture.completedFuture(first.map(e -> MiniCube.top(e, limit)));
+                    }
+                    BigDecimal threshold = nth(first.getResult(), limit).divide(new BigDecimal(m), IND_SCALE, 
+                            BigDecimal.ROUND_DOWN);
+                    
+                    // 2nd phase
+                    Map<Integer, Long> answered = new ConcurrentHashMap<Integer, Long>();
+                    return submit(new TopSum(queryId, indName, groupByDimName, filterDims, limit, threshold, null), 
+                            cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                            (Map<Integer, BigDecimal>) new ConcurrentHashMap<Integer, BigDecimal>(), 
+                            (Map<Integer, BigDecimal> x, Map<Integer, BigDecimal> y) -> {
+                                mergeSum(x, y);
+                                if (y != null) {
+                                    y.keySet().forEach(k -> answered.merge(k, 1L, Long::sum));
+                                }
+                            })
+                        .thenCompose(second -> {
+                            Map<Integer, BigDecimal> partial = second.getResult();
+                            BigDecimal lower = partial.size() < limit ? BigDecimal.ZERO : nth(partial, limit);
+                            int[] candidates = partial.entrySet().stream().filter(e -> e.getValue().add(threshold
+                                    .multiply(new BigDecimal(m - answered.get(e.getKey())))).compareTo(lower) >= 0)
+                                    .mapToInt(e -> e.getKey()).toArray();
+                            LOGGER.info("Top {} of sum {}: 1st phase {}, threshold {}, 2nd phase {}, candidates {}.", 
+                                    limit, indName, first.getResult().size(), threshold, partial.size(), 
+                                    candidates.length);
+                            
+                            // 3rd phase
+                            return submit(new TopSum(queryId, indName, groupByDimName, filterDims, limit, null, 
+                                    candidates), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                                    (Map<Integer, BigDecimal>) new ConcurrentHashMap<Integer, BigDecimal>(), 
+                                    TimeSeriesMiniCubeManagerHzImpl::mergeSum)
+                                .thenApply(third -> combine(MiniCube.top(third.getResult(), limit), first, second, 
+                                        third));
+                        });
+                }).thenCompose(e -> e);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<GroupKey, BigDecimal>>> sum(String indName, 
+                List<String> groupByDimNames, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Sum3(indName, groupByDimNames, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    (Map<GroupKey, BigDecimal>) new ConcurrentHashMap<GroupKey, BigDecimal>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeSum)
+                .thenApply(results -> {
+                    LOGGER.info("Sum {} group by {} on {} result size is {}", indName, groupByDimNames, 
+                            results.getContributors(), results.getResult().size());
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<List<Map<GroupKey, BigDecimal>>>> sumGroupingSets(String indName, 
+                List<List<String>> groupingSets, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Merge every grouping set independently
+            List<Map<GroupKey, BigDecimal>> accumulator = new ArrayList<Map<GroupKey, BigDecimal>>(groupingSets.size());
+            groupingSets.forEach(e -> accumulator.add(new ConcurrentHashMap<GroupKey, BigDecimal>()));
+            return submit(new SumGroupingSets(indName, groupingSets, filterDims), cubeIds, hzExecutorTimeout, 
+                    hedgeEnabled, accumulator, 
+                    (List<Map<GroupKey, BigDecimal>> x, BatchResult y) -> {
+                        if (y != null) {
+                            for (int i = 0; i < x.size(); i++) {
+                                @SuppressWarnings("unchecked")
+                                Map<GroupKey, BigDecimal> r = (Map<GroupKey, BigDecimal>) y.getResults()[i];
+                                mergeSum(x.get(i), r);
+                            }
+                        }
+                    })
+                .thenApply(results -> {
+                    LOGGER.info("Sum {} grouping sets {} on {}", indName, groupingSets, results.getContributors());
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<String, BigDecimal>>> sum(List<String> indNames,
+                Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Sums(indNames, null, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    new ConcurrentHashMap<String, BigDecimal>(), 
+                    (Map<String, BigDecimal> x, Map<String, Object> y) -> {
+                        if (y != null) {
+                            y.forEach((k, v) -> x.merge(k, (BigDecimal) v, BigDecimal::add));
+                        }
+                    })
+                .thenApply(results -> results.map(e -> {
+                    Map<String, BigDecimal> result = new LinkedHashMap<String, BigDecimal>();
+                    indNames.forEach(k -> result.put(k, e.getOrDefault(k, new BigDecimal(0)).setScale(IND_SCALE, 
+                            BigDecimal.ROUND_HALF_UP)));
+                    LOGGER.info("Sum {} on {} result is {}", indNames, results.getContributors(), result);
+                    return result;
+                }));
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public CompletableFuture<ExecutionResult<Map<String, Map<Integer, BigDecimal>>>> sum(List<String> indNames,
+                String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            Map<String, Map<Integer, BigDecimal>> accumulator = new LinkedHashMap<String, Map<Integer, BigDecimal>>();
+            indNames.forEach(k -> accumulator.put(k, new ConcurrentHashMap<Integer, BigDecimal>()));
+            return submit(new Sums(indNames, groupByDimName, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    accumulator, (Map<String, Map<Integer, BigDecimal>> x, Map<String, Object> y) -> {
+                        if (y != null) {
+                            y.forEach((k, v) -> mergeSum(x.get(k), (Map<Integer, BigDecimal>) v));
+                        }
+                    })
+                .thenApply(results -> {
+                    LOGGER.debug("Sum {} on {} with filter {} results is {}", indNames, results.getContributors(), 
+                            filterDims, results.getResult());
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<List<BigDecimal>>> measures(List<Measure> measures, 
+                Map<String, List<Integer>> filterDims) {
+            
+            List<String> states = Measure.states(measures);
+            return states(states, null, filterDims).thenApply(results -> results.map(e -> {
+                BigDecimal[] values = e.getOrDefault(0, Measure.empty(states));
+                return measures.stream().map(m -> m.evaluate(states, values)).collect(Collectors.toList());
+            }));
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, List<BigDecimal>>>> measures(List<Measure> measures, 
+                String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            List<String> states = Measure.states(measures);
+            return states(states, groupByDimName, filterDims).thenApply(results -> results.map(e -> {
+                Map<Integer, List<BigDecimal>> result = new HashMap<Integer, List<BigDecimal>>();
+                e.forEach((k, v) -> result.put(k, measures.stream().map(m -> m.evaluate(states, v))
+                        .collect(Collectors.toList())));
+                return result;
+            }));
+        }
+        
+        /**
+         * Merge partial states of cubes, measures are evaluated after merging.
+         */
+        private CompletableFuture<ExecutionResult<Map<Integer, BigDecimal[]>>> states(List<String> states, 
+                String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new States(states, groupByDimName, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    (Map<Integer, BigDecimal[]>) new ConcurrentHashMap<Integer, BigDecimal[]>(), 
+                    (Map<Integer, BigDecimal[]> x, Map<Integer, BigDecimal[]> y) -> {
+                        if (y != null) {
+                            y.forEach((k, v) -> x.merge(k, v, (p, q) -> Measure.merge(states, p, q)));
+                        }
+                    })
+                .thenApply(results -> {
+                    LOGGER.info("States {} group by {} on {} result size is {}", states, groupByDimName, 
+                            results.getContributors(), results.getResult().size());
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Long>> count(String indName) {
+            
+            return count(indName, (Map<String, List<Integer>>) null);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Long>> count(String indName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Count(indName, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, new AtomicLong(0), 
+                    (AtomicLong x, Long y) -> x.addAndGet(y))
+                .thenApply(results -> {
+                    long result = results.getResult().get();
+                    LOGGER.info("Count {} on {} result is {}", indName, results.getContributors(), result);
+                    return results.map(e -> result);
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, Long>>> count(String indName, String groupByDimName,
+                Map<String, List<Integer>> filterDims) {
+            
+            return count(indName, groupByDimName, filterDims, null);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, Long>>> count(String indName, String groupByDimName,
+                Map<String, List<Integer>> filterDims, Having having) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            Having pushdown = having != null && aligned(cubeIds, groupByDimName) ? having : null;
+            
+            // Do execute
+            return submit(new Count2(indName, groupByDimName, filterDims, pushdown), cubeIds, hzExecutorTimeout, 
+                    hedgeEnabled, (Map<Integer, Long>) new ConcurrentHashMap<Integer, Long>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeCount)
+                .thenApply(results -> {
+                    LOGGER.debug("Count {} on {} with filter {} results is {}", indName, results.getContributors(), 
+                            filterDims, results.getResult());
+                    if (having != null && pushdown == null) {
+                        LOGGER.info("Apply {} after merging, groups are not aligned with time-series.", having);
+                        return results.map(e -> having.filter(e));
+                    }
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<GroupKey, Long>>> count(String indName, 
+                List<String> groupByDimNames, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Count3(indName, groupByDimNames, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    (Map<GroupKey, Long>) new ConcurrentHashMap<GroupKey, Long>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeCount)
+                .thenApply(results -> {
+                    LOGGER.info("Count {} group by {} on {} result size is {}", indName, groupByDimNames, 
+                            results.getContributors(), results.getResult().size());
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, RoaringBitmap>>> distinct(String distinctName, 
+                boolean isDim, String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Distinct(distinctName, isDim, groupByDimName, filterDims), cubeIds, hzExecutorTimeout, 
+                    hedgeEnabled, (Map<Integer, RoaringBitmap>) new ConcurrentHashMap<Integer, RoaringBitmap>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeDistinct)
+                .thenApply(results -> {
+                    LOGGER.debug("Distinct {} on {} with filter {} results is {}", distinctName, 
+                            results.getContributors(), filterDims, results.getResult());
+                    return results;
+                });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, Integer>>> discnt(String distinctName, boolean isDim,
+                String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            return distinct(distinctName, isDim, groupByDimName, filterDims).thenApply(results -> {
+                // Count it.
+                Map<Integer, Integer> result = results.getResult().entrySet().stream().collect(
+                        Collectors.toMap(e -> e.getKey(), e -> e.getValue().getCardinality()));
+                LOGGER.info("Distinct {} on {} with filter {} results size is {}", distinctName, 
+                        results.getContributors(), filterDims, result.size());
+                return results.map(e -> result);
+            });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, HyperLogLog>>> sketch(String distinctName, 
+                boolean isDim, String groupByDimName, Map<String, List<Integer>> filterDims, int precision) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Sketch(distinctName, isDim, groupByDimName, filterDims, precision), cubeIds, 
+                    hzExecutorTimeout, hedgeEnabled, 
+                    (Map<Integer, HyperLogLog>) new ConcurrentHashMap<Integer, HyperLogLog>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeSketch);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, Integer>>> discnt(String distinctName, boolean isDim,
+                String groupByDimName, Map<String, List<Integer>> filterDims, int precision) {
+            
+            return sketch(distinctName, isDim, groupByDimName, filterDims, precision).thenApply(results -> {
+                // Estimate it.
+                Map<Integer, Integer> result = results.getResult().entrySet().stream().collect(
+                        Collectors.toMap(e -> e.getKey(), e -> (int) e.getValue().cardinality()));
+                LOGGER.info("Approximate distinct {} on {} with filter {} results size is {}", distinctName, 
+                        results.getContributors(), filterDims, result.size());
+                return results.map(e -> result);
+            });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, TDigest>>> digest(String indName, 
+                String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Digest(indName, groupByDimName, filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    (Map<Integer, TDigest>) new ConcurrentHashMap<Integer, TDigest>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeDigest);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, List<BigDecimal>>>> quantiles(String indName, 
+                String groupByDimName, Map<String, List<Integer>> filterDims, double[] quantiles) {
+            
+            return digest(indName, groupByDimName, filterDims).thenApply(results -> {
+                LOGGER.info("Quantiles {} of {} on {} with filter {} results size is {}", Arrays.toString(quantiles), 
+                        indName, results.getContributors(), filterDims, results.getResult().size());
+                return results.map(e -> MiniCube.quantiles(e, quantiles));
+            });
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, long[]>>> histogram(String indName, 
+                String groupByDimName, Map<String, List<Integer>> filterDims, double[] edges) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Histogram(indName, groupByDimName, filterDims, edges), cubeIds, hzExecutorTimeout, 
+                    hedgeEnabled, (Map<Integer, long[]>) new ConcurrentHashMap<Integer, long[]>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeHistogram);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, Estimate>>> estimateSum(String indName, 
+                String groupByDimName, Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Approximate(indName, groupByDimName, filterDims), cubeIds, hzExecutorTimeout, 
+                    hedgeEnabled, (Map<Integer, Estimate>) new ConcurrentHashMap<Integer, Estimate>(), 
+                    TimeSeriesMiniCubeManagerHzImpl::mergeEstimate);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<Integer, Estimate>>> estimateCount(String groupByDimName, 
+                Map<String, List<Integer>> filterDims) {
+            
+            // Count when indicate is absent
+            return estimateSum(null, groupByDimName, filterDims);
+        }
+
+        @Override
+        public CompletableFuture<ExecutionResult<Map<String, Plan>>> explain(Map<String, List<Integer>> filterDims) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Do execute
+            return submit(new Explain(filterDims), cubeIds, hzExecutorTimeout, hedgeEnabled, 
+                    (Map<String, Plan>) new ConcurrentHashMap<String, Plan>(), (result, t) -> {
+                        if (t != null) {
+                            result.putAll(t);
+                        }
+                    });
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public CompletableFuture<ExecutionResult<List<Object>>> batch(List<AggregationSpec> specs) {
+            
+            Set<String> cubeIds = cubeIds(timeSeries);
+            
+            // Accumulator of every spec
+            List<Object> accumulator = new ArrayList<Object>(specs.size());
+            for (AggregationSpec spec : specs) {
+                if (spec.getType() == AggregationSpec.Type.SUM && spec.getGroupByDimName() == null) {
+                    accumulator.add(new AtomicReference<BigDecimal>(new BigDecimal(0)));
+                } else if (spec.getType() == AggregationSpec.Type.COUNT && spec.getGroupByDimName() == null) {
+                    accumulator.add(new AtomicLong(0));
+                } else {
+                    accumulator.add(new ConcurrentHashMap<Integer, Object>());
+                }
+            }
+            
+            // Do execute
+            return submit(new Batch(specs), cubeIds, hzExecutorTimeout, hedgeEnabled, accumulator, 
+                    (List<Object> x, BatchResult y) -> {
+                        if (y == null) {
+                            return;
+                        }
+                        for (int i = 0; i < specs.size(); i++) {
+                            Object a = x.get(i);
+                            Object r = y.getResults()[i];
+                            if (a instanceof AtomicReference) {
+                                ((AtomicReference<BigDecimal>) a).accumulateAndGet((BigDecimal) r, BigDecimal::add);
+                            } else if (a instanceof AtomicLong) {
+                                ((AtomicLong) a).addAndGet((Long) r);
+                            } else if (specs.get(i).getType() == AggregationSpec.Type.SUM) {
+                                mergeSum((Map<Integer, BigDecimal>) a, (Map<Integer, BigDecimal>) r);
+                            } else if (specs.get(i).getType() == AggregationSpec.Type.COUNT) {
+                                mergeCount((Map<Integer, Long>) a, (Map<Integer, Long>) r);
+                            } else {
+                                mergeDistinct((Map<Integer, RoaringBitmap>) a, (Map<Integer, RoaringBitmap>) r);
+                            }
+                        }
+                    })
+                .thenApply(results -> results.map(e -> {
+                    List<Object> result = new ArrayList<Object>(e.size());
+                    for (int i = 0; i < specs.size(); i++) {
+                        Object a = e.get(i);
+                        if (a instanceof AtomicReference) {
+                            result.add(((AtomicReference<BigDecimal>) a).get().setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP));
+                        } else if (a instanceof AtomicLong) {
+                            result.add(((AtomicLong) a).get());
+                        } else if (specs.get(i).getType() == AggregationSpec.Type.DISCNT) {
+                            result.add(((Map<Integer, RoaringBitmap>) a).entrySet().stream().collect(
+                                    Collectors.toMap(d -> d.getKey(), d -> d.getValue().getCardinality())));
+                        } else {
+                            result.add(a);
+                        }
+                    }
+                    LOGGER.info("Batch {} aggregations on {}", specs.size(), results.getContributors());
+                    return result;
+                }));
+        }
+        
+    }
+    
+    /**
+     * Aggregation tasks travel by {@link CompactSerialization} instead of Java serialization.
+     * @author mengran
+     *
+     */
+    private static abstract class Executee implements HazelcastInstanceAware, IdentifiedDataSerializable {
+
+        protected transient HazelcastInstance instance;
+        protected transient TimeSeriesMiniCubeManagerHzImpl impl;
+        
+        public Executee() {
+            super();
+        }
+
+        @Override
+        public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+            this.instance = hazelcastInstance;
+            impl = (TimeSeriesMiniCubeManagerHzImpl) instance.getUserContext().get("this");
+        }
+        
+        @Override
+        public int getFactoryId() {
+            return CompactSerialization.FACTORY_ID;
+        }
+        
+    }
+    
+    private static final int MODE = 101;
+    private static final int SUM = 102;
+    private static final int SUM2 = 103;
+    private static final int COUNT = 104;
+    private static final int COUNT2 = 105;
+    private static final int DISTINCT = 106;
+    private static final int BATCH = 107;
+    private static final int SUMS = 108;
+    private static final int SUM3 = 109;
+    private static final int COUNT3 = 110;
+    private static final int SUM_GROUPING_SETS = 111;
+    private static final int TOP_SUM = 112;
+    private static final int STATES = 113;
+    private static final int SKETCH = 114;
+    private static final int DIGEST = 115;
+    private static final int HISTOGRAM = 116;
+    private static final int APPROXIMATE = 117;
+    private static final int EXPLAIN = 118;
+    private static final int DROP_TOP_SUM = 119;
+    
+    /**
+     * Create tasks and results on receiver.
+     * @author mengran
+     *
+     */
+    private static class ExecuteeFactory implements DataSerializableFactory {
+
+        @Override
+        public IdentifiedDataSerializable create(int typeId) {
+            
+            switch (typeId) {
+            case MODE:
+                return new Mode();
+            case SUM:
+                return new Sum();
+            case SUM2:
+                return new Sum2();
+            case COUNT:
+                return new Count();
+            case COUNT2:
+                return new Count2();
+            case DISTINCT:
+                return new Distinct();
+            case BATCH:
+                return new Batch();
+            case SUMS:
+                return new Sums();
+            case SUM3:
+                return new Sum3();
+            case COUNT3:
+                return new Count3();
+            case SUM_GROUPING_SETS:
+                return new SumGroupingSets();
+            case TOP_SUM:
+                return new TopSum();
+            case STATES:
+                return new States();
+            case SKETCH:
+                return new Sketch();
+            case DIGEST:
+                return new Digest();
+            case HISTOGRAM:
+                return new Histogram();
+            case APPROXIMATE:
+                return new Approximate();
+            case EXPLAIN:
+                return new Explain();
+            case DROP_TOP_SUM:
+                return new DropTopSum();
+            default:
+                return CompactSerialization.create(typeId);
+            }
+        }
+        
+    }
+    
+    private static class Sum extends Executee implements Callable<BigDecimal> {
+        
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        
+        public Sum() {
+            super();
+        }
+        
+        public Sum(String indName, Map<String, List<Integer>> filterDims) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+        }
+
+        @Override
+        public BigDecimal call() throws Exception {
+            
+            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? new BigDecimal(0) : impl.miniCube.sum(indName, filterDims);
+        }
+
+        @Override
+        public int getId() {
+            return SUM;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+
+    @Override
+    public BigDecimal sum(String indName) {
+        
+        return sum(indName, null);
+    }
+
+    @Override
+    public BigDecimal sum(String indName, Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sum(indName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * FIXME: Need re-design
+     * @author mengran
+     *
+     */
+    private static class Sum2 extends Executee implements Callable<Map<Integer, BigDecimal>> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        private Having having;
+        
+        public Sum2() {
+            super();
+        }
+        
+        public Sum2(String indName, String groupDimName, Map<String, List<Integer>> filterDims, Having having) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+            this.having = having;
+        }
+
+        @Override
+        public Map<Integer, BigDecimal> call() throws Exception {
+            
+            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new DecimalMap(impl.miniCube.sum(indName, groupDimName, filterDims, 
+                    having));
+        }
+
+        @Override
+        public int getId() {
+            return SUM2;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+            CompactSerialization.writeHaving(out, having);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+            having = CompactSerialization.readHaving(in);
+        }
+        
+    }
+
+    @Override
+    public Map<Integer, BigDecimal> sum(String indName, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sum(indName, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * Whole group of cube which is aggregated by 1st phase of top-N sum, later phases of same query on this member 
+     * reuse it instead of aggregating again.
+     * @author mengran
+     *
+     */
+    private static class PhaseGroup {
+        
+        private final MiniCube miniCube;
+        private final Map<Integer, BigDecimal> group;
+        
+        public PhaseGroup(MiniCube miniCube, Map<Integer, BigDecimal> group) {
+            super();
+            this.miniCube = miniCube;
+            this.group = group;
+        }
+        
+    }
+    
+    /**
+     * Every phase of top-N sum must complete in executor's timeout, so group of 1st phase is kept at most 
+     * {@value #TOP_SUM_PHASES} timeouts.
+     */
+    private static final int TOP_SUM_PHASES = 3;
+    
+    /**
+     * @param queryId id of top-N sum, shared by its phases, <code>null</code> means not to cache
+     * @param last <code>true</code> for last phase, group is dropped after it
+     * @param aggregation aggregate whole group of cube
+     * @return cached group of query, or aggregated one when it is not cached on this member, is expired or cube is
+     *  rebuilt since
+     */
+    private Map<Integer, BigDecimal> phaseGroup(String queryId, boolean last, 
+            Supplier<Map<Integer, BigDecimal>> aggregation) {
+        
+        if (queryId == null) {
+            return aggregation.get();
+        }
+        PhaseGroup cached = last ? topSumGroups.remove(queryId) : topSumGroups.get(queryId);
+        MiniCube current = miniCube;
+        if (cached != null && cached.miniCube == current) {
+            return cached.group;
+        }
+        Map<Integer, BigDecimal> group = aggregation.get();
+        if (!last) {
+            PhaseGroup phaseGroup = new PhaseGroup(current, group);
+            topSumGroups.put(queryId, phaseGroup);
+            // Expire even when coordinator never drops it, e.g. it is gone or its drop did not arrive.
+            hedgeScheduler.schedule(() -> topSumGroups.remove(queryId, phaseGroup), hzExecutorTimeout 
+                    * TOP_SUM_PHASES, TimeUnit.SECONDS);
+        }
+        return group;
+    }
+    
+    /**
+     * Drop groups of top-N sum on every cube of it, include replicas, when its later phases will not run.
+     */
+    private void dropTopSum(String queryId, Collection<String> cubeIds) {
+        
+        submit(new DropTopSum(queryId), cubeIds, hzExecutorTimeout, false, false, 
+                Collections.synchronizedList(new ArrayList<Void>()), List::add).whenComplete((r, t) -> {
+                    if (t != null) {
+                        LOGGER.warn("Fail to drop groups of top sum {}, they will expire. {}", queryId, 
+                                t.getMessage());
+                    }
+                });
+    }
+    
+    /**
+     * @return <code>true</code> when given failure is caused by cube which refused to prune
+     */
+    private static boolean canNotPrune(Throwable t) {
+        
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof CanNotPruneException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Cube refuses 1st phase of top-N sum because bounds do not hold, e.g. it has negative sums.
+     * @author mengran
+     *
+     */
+    private static class CanNotPruneException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        public CanNotPruneException(String message) {
+            super(message);
+        }
+        
+    }
+    
+    /**
+     * Drop group of 1st phase of top-N sum on member, see {@link #phaseGroup(String, boolean, Supplier)}.
+     * @author mengran
+     *
+     */
+    private static class DropTopSum extends Executee implements Callable<Void> {
+        
+        private String queryId;
+        
+        public DropTopSum() {
+            super();
+        }
+        
+        public DropTopSum(String queryId) {
+            super();
+            this.queryId = queryId;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            
+            impl.topSumGroups.remove(queryId);
+            return null;
+        }
+
+        @Override
+        public int getId() {
+            return DROP_TOP_SUM;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            CompactSerialization.writeString(out, queryId);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            queryId = CompactSerialization.readString(in);
+        }
+        
+    }
+    
+    /**
+     * One phase of top-N sum, answers top-N of cube, or groups which sum &gt;= threshold, or groups of given keys.
+     * 
+     * <p>Every phase needs whole group of cube, so it is aggregated once by 1st phase and kept on member until 3rd
+     * phase of same query, or until coordinator drops it when it stops early, or until it expires. It costs memory 
+     * of one group per running query. Phase which runs on other replica, e.g. hedged one, aggregates again.
+     * @author mengran
+     *
+     */
+    private static class TopSum extends Executee implements Callable<Map<Integer, BigDecimal>> {
+
+        private String queryId;
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        private int limit;
+        private BigDecimal threshold;
+        private int[] keys;
+        
+        public TopSum() {
+            super();
+        }
+        
+        public TopSum(String queryId, String indName, String groupDimName, Map<String, List<Integer>> filterDims, 
+                int limit, BigDecimal threshold, int[] keys) {
+            super();
+            this.queryId = queryId;
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+            this.limit = limit;
+            this.threshold = threshold;
+            this.keys = keys;
+        }
+
+        @Override
+        public Map<Integer, BigDecimal> call() throws Exception {
+            
+            LOGGER.info("Top sum on {}", instance.getCluster().getLocalMember());
+            if (impl.miniCube == null) {
+                return null;
+            }
+            MiniCube miniCube = impl.miniCube;
+            Map<Integer, BigDecimal> group = impl.phaseGroup(queryId, keys != null, 
+                    () -> miniCube.sum(indName, groupDimName, filterDims));
+            DecimalMap result = new DecimalMap();
+            if (keys != null) {
+                for (int k : keys) {
+                    if (group.containsKey(k)) {
+                        result.put(k, group.get(k));
+                    }
+                }
+            } else if (threshold != null) {
+                group.forEach((k, v) -> {
+                    if (v.compareTo(threshold) >= 0) {
+                        result.put(k, v);
+                    }
+                });
+            } else {
+                if (group.values().stream().anyMatch(v -> v.signum() < 0)) {
+                    if (queryId != null) {
+                        impl.topSumGroups.remove(queryId);
+                    }
+                    throw new CanNotPruneException("Can not prune negative sum of " + indName);
+                }
+                result.putAll(MiniCube.top(group, limit));
+            }
+            return result;
+        }
+
+        @Override
+        public int getId() {
+            return TOP_SUM;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, queryId);
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+            CompactSerialization.writeVarLong(out, limit);
+            out.writeBoolean(threshold != null);
+            if (threshold != null) {
+                CompactSerialization.writeDecimal(out, threshold);
+            }
+            out.writeBoolean(keys != null);
+            if (keys != null) {
+                int[] sorted = keys.clone();
+                Arrays.sort(sorted);
+                CompactSerialization.writeSortedInts(out, sorted);
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            queryId = CompactSerialization.readString(in);
+            indName = CompactSerialization.readString(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+            limit = (int) CompactSerialization.readVarLong(in);
+            threshold = in.readBoolean() ? CompactSerialization.readDecimal(in) : null;
+            keys = in.readBoolean() ? CompactSerialization.readSortedInts(in) : null;
+        }
+        
+    }
+
+    @Override
+    public Map<Integer, BigDecimal> sum(String indName, String groupByDimName,
+            Map<String, List<Integer>> filterDims, Having having) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sum(indName, groupByDimName, filterDims, having)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    @Override
+    public Map<Integer, BigDecimal> topSum(String indName, String groupByDimName,
+            Map<String, List<Integer>> filterDims, int limit) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).topSum(indName, groupByDimName, filterDims, limit)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * Group by multiple dimensions, key is {@link GroupKey} of dimension values.
+     * @author mengran
+     *
+     */
+    private static class Sum3 extends Executee implements Callable<Map<GroupKey, BigDecimal>> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private List<String> groupDimNames;
+        
+        public Sum3() {
+            super();
+        }
+        
+        public Sum3(String indName, List<String> groupDimNames, Map<String, List<Integer>> filterDims) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimNames = groupDimNames;
+        }
+
+        @Override
+        public Map<GroupKey, BigDecimal> call() throws Exception {
+            
+            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new GroupDecimalMap(impl.miniCube.sum(indName, groupDimNames, 
+                    filterDims));
+        }
+
+        @Override
+        public int getId() {
+            return SUM3;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeStrings(out, groupDimNames);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            groupDimNames = CompactSerialization.readStrings(in);
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+
+    @Override
+    public Map<GroupKey, BigDecimal> sum(String indName, List<String> groupByDimNames,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sum(indName, groupByDimNames, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * Sum of all grouping sets in one scan, results are in order of sets.
+     * @author mengran
+     *
+     */
+    private static class SumGroupingSets extends Executee implements Callable<BatchResult> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private List<List<String>> groupingSets;
+        
+        public SumGroupingSets() {
+            super();
+        }
+        
+        public SumGroupingSets(String indName, List<List<String>> groupingSets, Map<String, List<Integer>> filterDims) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupingSets = groupingSets;
+        }
+
+        @Override
+        public BatchResult call() throws Exception {
+            
+            LOGGER.info("Sum grouping sets {} on {}", groupingSets, instance.getCluster().getLocalMember());
+            if (impl.miniCube == null) {
+                return null;
+            }
+            return new BatchResult(impl.miniCube.sumGroupingSets(indName, groupingSets, filterDims).stream()
+                    .map(e -> new GroupDecimalMap(e)).toArray());
+        }
+
+        @Override
+        public int getId() {
+            return SUM_GROUPING_SETS;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeVarLong(out, groupingSets.size());
+            for (List<String> groupingSet : groupingSets) {
+                CompactSerialization.writeStrings(out, groupingSet);
+            }
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            int size = (int) CompactSerialization.readVarLong(in);
+            groupingSets = new ArrayList<List<String>>(size);
+            for (int i = 0; i < size; i++) {
+                groupingSets.add(CompactSerialization.readStrings(in));
+            }
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+    
+    @Override
+    public List<Map<GroupKey, BigDecimal>> sumGroupingSets(String indName, List<List<String>> groupingSets,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sumGroupingSets(indName, groupingSets, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * Sum multiple indicates in one scan.
+     * @author mengran
+     *
+     */
+    private static class Sums extends Executee implements Callable<Map<String, Object>> {
+
+        private List<String> indNames;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        
+        public Sums() {
+            super();
+        }
+        
+        public Sums(List<String> indNames, String groupDimName, Map<String, List<Integer>> filterDims) {
+            super();
+            this.indNames = indNames;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+        }
+
+        @Override
+        public Map<String, Object> call() throws Exception {
+            
+            LOGGER.info("Sum {} on {}", indNames, instance.getCluster().getLocalMember());
+            if (impl.miniCube == null) {
+                return null;
+            }
+            if (groupDimName == null) {
+                return new MeasureMap(impl.miniCube.sum(indNames, filterDims));
+            }
+            MeasureMap result = new MeasureMap();
+            impl.miniCube.sum(indNames, groupDimName, filterDims).forEach((k, v) -> result.put(k, new DecimalMap(v)));
+            return result;
+        }
+
+        @Override
+        public int getId() {
+            return SUMS;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeStrings(out, indNames);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indNames = CompactSerialization.readStrings(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+    
+    @Override
+    public Map<String, BigDecimal> sum(List<String> indNames, Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sum(indNames, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    @Override
+    public Map<String, Map<Integer, BigDecimal>> sum(List<String> indNames, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).sum(indNames, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * Partial states of measures, see {@link MiniCube#states(List, String, Map)}.
+     * @author mengran
+     *
+     */
+    private static class States extends Executee implements Callable<Map<Integer, BigDecimal[]>> {
+
+        private List<String> states;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        
+        public States() {
+            super();
+        }
+        
+        public States(List<String> states, String groupDimName, Map<String, List<Integer>> filterDims) {
+            super();
+            this.states = states;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+        }
+
+        @Override
+        public Map<Integer, BigDecimal[]> call() throws Exception {
+            
+            LOGGER.info("States {} on {}", states, instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new StateMap(impl.miniCube.states(states, groupDimName, filterDims));
+        }
+
+        @Override
+        public int getId() {
+            return STATES;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeStrings(out, states);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            states = CompactSerialization.readStrings(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+    
+    @Override
+    public List<BigDecimal> measures(List<Measure> measures, Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).measures(measures, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    @Override
+    public Map<Integer, List<BigDecimal>> measures(List<Measure> measures, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).measures(measures, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    private static class Count extends Executee implements Callable<Long> {
+        
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        
+        public Count() {
+            super();
+        }
+        
+        public Count(String indName, Map<String, List<Integer>> filterDims) {
             super();
+            this.indName = indName;
+            this.filterDims = filterDims;
         }
 
         @Override
-        public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
-            this.instance = hazelcastInstance;
-            impl = (TimeSeriesMiniCubeManagerHzImpl) instance.getUserContext().get("this");
+        public Long call() throws Exception {
+            
+            LOGGER.info("Count on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? 0L : impl.miniCube.count(indName, filterDims);
+        }
+
+        @Override
+        public int getId() {
+            return COUNT;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
         }
         
     }
+
     
-    private static class Sum extends Executee implements Callable<BigDecimal> {
+    @Override
+    public long count(String indName) {
         
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
+        return count(indName, null);
+    }
+
+    @Override
+    public long count(String indName, Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).count(indName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * FIXME: Need re-design
+     * @author mengran
+     *
+     */
+    private static class Count2 extends Executee implements Callable<Map<Integer, Long>> {
+
         private String indName;
         private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        private Having having;
         
-        public Sum(String indName, Map<String, List<Integer>> filterDims) {
+        public Count2() {
+            super();
+        }
+        
+        public Count2(String indName, String groupDimName, Map<String, List<Integer>> filterDims, Having having) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+            this.having = having;
+        }
+
+        @Override
+        public Map<Integer, Long> call() throws Exception {
+            
+            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new LongMap(impl.miniCube.count(indName, groupDimName, filterDims, 
+                    having));
+        }
+
+        @Override
+        public int getId() {
+            return COUNT2;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+            CompactSerialization.writeHaving(out, having);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+            having = CompactSerialization.readHaving(in);
+        }
+        
+    }
+
+    @Override
+    public Map<Integer, Long> count(String indName, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).count(indName, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * Group by multiple dimensions, key is {@link GroupKey} of dimension values.
+     * @author mengran
+     *
+     */
+    private static class Count3 extends Executee implements Callable<Map<GroupKey, Long>> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private List<String> groupDimNames;
+        
+        public Count3() {
+            super();
+        }
+        
+        public Count3(String indName, List<String> groupDimNames, Map<String, List<Integer>> filterDims) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimNames = groupDimNames;
+        }
+
+        @Override
+        public Map<GroupKey, Long> call() throws Exception {
+            
+            LOGGER.info("Count on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new GroupLongMap(impl.miniCube.count(indName, groupDimNames, 
+                    filterDims));
+        }
+
+        @Override
+        public int getId() {
+            return COUNT3;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeStrings(out, groupDimNames);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            groupDimNames = CompactSerialization.readStrings(in);
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+
+    @Override
+    public Map<Integer, Long> count(String indName, String groupByDimName,
+            Map<String, List<Integer>> filterDims, Having having) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).count(indName, groupByDimName, filterDims, having)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    @Override
+    public Map<GroupKey, Long> count(String indName, List<String> groupByDimNames,
+            Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).count(indName, groupByDimNames, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+    
+    /**
+     * @author mengran
+     *
+     */
+    private static class Distinct extends Executee implements Callable<Map<Integer, RoaringBitmap>> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        private boolean isDim;
+        
+        public Distinct() {
+            super();
+        }
+        
+        public Distinct(String indName, boolean isDim, String groupDimName, Map<String, List<Integer>> filterDims) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+            this.isDim = isDim;
+        }
+
+        @Override
+        public Map<Integer, RoaringBitmap> call() throws Exception {
+            
+            LOGGER.info("Distinct on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new BitmapMap(impl.miniCube.distinct(indName, isDim, groupDimName, 
+                    filterDims));
+        }
+
+        @Override
+        public int getId() {
+            return DISTINCT;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            out.writeBoolean(isDim);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            isDim = in.readBoolean();
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+        }
+        
+    }
+
+    /**
+     * @author mengran
+     *
+     */
+    private static class Sketch extends Executee implements Callable<Map<Integer, HyperLogLog>> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        private boolean isDim;
+        private int precision;
+        
+        public Sketch() {
+            super();
+        }
+        
+        public Sketch(String indName, boolean isDim, String groupDimName, Map<String, List<Integer>> filterDims, 
+                int precision) {
+            super();
+            this.indName = indName;
+            this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
+            this.isDim = isDim;
+            this.precision = precision;
+        }
+
+        @Override
+        public Map<Integer, HyperLogLog> call() throws Exception {
+            
+            LOGGER.info("Sketch on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new SketchMap(impl.miniCube.sketch(indName, isDim, groupDimName, 
+                    filterDims, precision));
+        }
+
+        @Override
+        public int getId() {
+            return SKETCH;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            out.writeBoolean(isDim);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+            out.writeByte(precision);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            isDim = in.readBoolean();
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+            precision = in.readByte();
+        }
+        
+    }
+
+    /**
+     * @author mengran
+     *
+     */
+    private static class Digest extends Executee implements Callable<Map<Integer, TDigest>> {
+
+        private String indName;
+        private Map<String, List<Integer>> filterDims;
+        private String groupDimName;
+        
+        public Digest() {
+            super();
+        }
+        
+        public Digest(String indName, String groupDimName, Map<String, List<Integer>> filterDims) {
             super();
             this.indName = indName;
             this.filterDims = filterDims;
+            this.groupDimName = groupDimName;
         }
 
         @Override
-        public BigDecimal call() throws Exception {
+        public Map<Integer, TDigest> call() throws Exception {
             
-            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
-            return impl.miniCube == null ? new BigDecimal(0) : impl.miniCube.sum(indName, filterDims);
+            LOGGER.info("Digest on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new DigestMap(impl.miniCube.digest(indName, groupDimName, 
+                    filterDims));
         }
-        
-    }
 
-    @Override
-    public BigDecimal sum(String indName) {
-        
-        return sum(indName, null);
-    }
+        @Override
+        public int getId() {
+            return DIGEST;
+        }
 
-    @Override
-    public BigDecimal sum(String indName, Map<String, List<Integer>> filterDims) {
-        
-        try {
-            Set<String> cubeIds = cubeIds();
-            
-            // Do execute
-            List<BigDecimal> results = execute(new Sum(indName, filterDims), cubeIds, hzExecutorTimeout);
-            LOGGER.debug("Sum {} on {} results is {}", indName, cubeIds, results);
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
             
-            BigDecimal result = results.stream().reduce(new BigDecimal(0), (x, y) -> x.add(y))
-                    .setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP);
-            LOGGER.info("Sum {} on {} result is {}", indName, cubeIds, result);
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
             
-            return result;
-        } finally {
-            AGG_CONTEXT.remove();
+            indName = CompactSerialization.readString(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
         }
+        
     }
     
     /**
-     * FIXME: Need re-design
      * @author mengran
      *
      */
-    private static class Sum2 extends Executee implements Callable<Map<Integer, BigDecimal>> {
+    private static class Histogram extends Executee implements Callable<Map<Integer, long[]>> {
 
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
-        
         private String indName;
         private Map<String, List<Integer>> filterDims;
         private String groupDimName;
+        private double[] edges;
+        
+        public Histogram() {
+            super();
+        }
         
-        public Sum2(String indName, String groupDimName, Map<String, List<Integer>> filterDims) {
+        public Histogram(String indName, String groupDimName, Map<String, List<Integer>> filterDims, 
+                double[] edges) {
             super();
             this.indName = indName;
             this.filterDims = filterDims;
             this.groupDimName = groupDimName;
+            this.edges = edges;
         }
 
         @Override
-        public Map<Integer, BigDecimal> call() throws Exception {
+        public Map<Integer, long[]> call() throws Exception {
             
-            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
-            return impl.miniCube == null ? null : impl.miniCube.sum(indName, groupDimName, filterDims);
+            LOGGER.info("Histogram on {}", instance.getCluster().getLocalMember());
+            return impl.miniCube == null ? null : new HistogramMap(impl.miniCube.histogram(indName, groupDimName, 
+                    filterDims, edges));
+        }
+
+        @Override
+        public int getId() {
+            return HISTOGRAM;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+            CompactSerialization.writeVarLong(out, edges.length);
+            for (double e : edges) {
+                out.writeDouble(e);
+            }
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
+            edges = new double[(int) CompactSerialization.readVarLong(in)];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = in.readDouble();
+            }
         }
         
     }
 
     @Override
-    public Map<Integer, BigDecimal> sum(String indName, String groupByDimName,
-            Map<String, List<Integer>> filterDims) {
+    public Map<Integer, RoaringBitmap> distinct(String distinctName, boolean isDim,
+            String groupByDimName, Map<String, List<Integer>> filterDims) {
         
         try {
-            Set<String> cubeIds = cubeIds();
-            
-            // Do execute
-            List<Map<Integer, BigDecimal>> results = execute(new Sum2(indName, groupByDimName, filterDims), 
-                    cubeIds, hzExecutorTimeout);
-            LOGGER.debug("Group {} on {} with filter {} results is {}", indName, cubeIds, filterDims, results);
-            
-            Map<Integer, BigDecimal> result = new HashMap<Integer, BigDecimal>();
-            results.stream().forEach(new Consumer<Map<Integer, BigDecimal>>() {
-
-                @Override
-                public void accept(Map<Integer, BigDecimal> t) {
-                    t.forEach((k, v) -> result.merge(k, v, BigDecimal::add));
-                }
-            });
-            LOGGER.debug("Sum {} on {} with filter {} results is {}", indName, cubeIds, filterDims, result);
-            
-            return result;
+            return join(async(AGG_CONTEXT.get()).distinct(distinctName, isDim, groupByDimName, filterDims)).getResult();
         } finally {
             AGG_CONTEXT.remove();
         }
     }
-    
-    private static class Count extends Executee implements Callable<Long> {
+
+    @Override
+    public Map<Integer, Integer> discnt(String distinctName, boolean isDim, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
         
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
-        private String indName;
-        private Map<String, List<Integer>> filterDims;
+        try {
+            return join(async(AGG_CONTEXT.get()).discnt(distinctName, isDim, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
+
+    @Override
+    public Map<Integer, HyperLogLog> sketch(String distinctName, boolean isDim, String groupByDimName,
+            Map<String, List<Integer>> filterDims, int precision) {
         
-        public Count(String indName, Map<String, List<Integer>> filterDims) {
-            super();
-            this.indName = indName;
-            this.filterDims = filterDims;
+        try {
+            return join(async(AGG_CONTEXT.get()).sketch(distinctName, isDim, groupByDimName, filterDims, precision))
+                    .getResult();
+        } finally {
+            AGG_CONTEXT.remove();
         }
+    }
 
-        @Override
-        public Long call() throws Exception {
-            
-            LOGGER.info("Count on {}", instance.getCluster().getLocalMember());
-            return impl.miniCube == null ? 0L : impl.miniCube.count(indName, filterDims);
+    @Override
+    public Map<Integer, Integer> discnt(String distinctName, boolean isDim, String groupByDimName,
+            Map<String, List<Integer>> filterDims, int precision) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).discnt(distinctName, isDim, groupByDimName, filterDims, precision))
+                    .getResult();
+        } finally {
+            AGG_CONTEXT.remove();
         }
+    }
+
+    @Override
+    public Map<Integer, TDigest> digest(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
         
+        try {
+            return join(async(AGG_CONTEXT.get()).digest(indName, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
     }
 
-    
     @Override
-    public long count(String indName) {
+    public Map<Integer, List<BigDecimal>> quantiles(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, double[] quantiles) {
         
-        return count(indName, null);
+        try {
+            return join(async(AGG_CONTEXT.get()).quantiles(indName, groupByDimName, filterDims, quantiles))
+                    .getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
     }
 
     @Override
-    public long count(String indName, Map<String, List<Integer>> filterDims) {
+    public Map<Integer, long[]> histogram(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, double[] edges) {
         
         try {
-            Set<String> cubeIds = cubeIds();
-            
-            // Do execute
-            List<Long> results = execute(new Count(indName, filterDims), cubeIds, hzExecutorTimeout);
-            LOGGER.debug("Count {} on {} results is {}", indName, cubeIds, results);
-            
-            Long result = results.stream().reduce(0L, (x, y) -> x + y);
-            LOGGER.info("Count {} on {} result is {}", indName, cubeIds, result);
-            
-            return result;
+            return join(async(AGG_CONTEXT.get()).histogram(indName, groupByDimName, filterDims, edges)).getResult();
         } finally {
             AGG_CONTEXT.remove();
         }
     }
-    
+
     /**
-     * FIXME: Need re-design
+     * Approximate sum, or count when indicate is <code>null</code>, on sample of cube.
      * @author mengran
      *
      */
-    private static class Count2 extends Executee implements Callable<Map<Integer, Long>> {
+    private static class Approximate extends Executee implements Callable<Map<Integer, Estimate>> {
 
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
-        
         private String indName;
         private Map<String, List<Integer>> filterDims;
         private String groupDimName;
         
-        public Count2(String indName, String groupDimName, Map<String, List<Integer>> filterDims) {
+        public Approximate() {
+            super();
+        }
+        
+        public Approximate(String indName, String groupDimName, Map<String, List<Integer>> filterDims) {
             super();
             this.indName = indName;
             this.filterDims = filterDims;
@@ -958,120 +3285,202 @@ public class TimeSeriesMiniCubeManagerHzImpl implements TimeSeriesMiniCubeManage
         }
 
         @Override
-        public Map<Integer, Long> call() throws Exception {
+        public Map<Integer, Estimate> call() throws Exception {
             
-            LOGGER.info("Sum on {}", instance.getCluster().getLocalMember());
-            return impl.miniCube == null ? null : impl.miniCube.count(indName, groupDimName, filterDims);
+            LOGGER.info("Approximate on {}", instance.getCluster().getLocalMember());
+            if (impl.miniCube == null) {
+                return null;
+            }
+            return new EstimateMap(indName == null ? impl.miniCube.estimateCount(groupDimName, filterDims) 
+                    : impl.miniCube.estimateSum(indName, groupDimName, filterDims));
+        }
+
+        @Override
+        public int getId() {
+            return APPROXIMATE;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeString(out, indName);
+            CompactSerialization.writeString(out, groupDimName);
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            indName = CompactSerialization.readString(in);
+            groupDimName = CompactSerialization.readString(in);
+            filterDims = CompactSerialization.readFilter(in);
         }
         
     }
 
     @Override
-    public Map<Integer, Long> count(String indName, String groupByDimName,
+    public Map<Integer, Estimate> estimateSum(String indName, String groupByDimName, 
             Map<String, List<Integer>> filterDims) {
         
         try {
-            Set<String> cubeIds = cubeIds();
-            
-            // Do execute
-            List<Map<Integer, Long>> results = execute(new Count2(indName, groupByDimName, filterDims), 
-                    cubeIds, hzExecutorTimeout);
-            LOGGER.debug("Group counting {} on {} with filter {} results is {}", indName, cubeIds, filterDims, results);
-            
-            Map<Integer, Long> result = new HashMap<Integer, Long>();
-            results.stream().forEach(new Consumer<Map<Integer, Long>>() {
+            return join(async(AGG_CONTEXT.get()).estimateSum(indName, groupByDimName, filterDims)).getResult();
+        } finally {
+            AGG_CONTEXT.remove();
+        }
+    }
 
-                @Override
-                public void accept(Map<Integer, Long> t) {
-                    t.forEach((k, v) -> result.merge(k, v, Long::sum));
-                }
-            });
-            LOGGER.debug("Count {} on {} with filter {} results is {}", indName, cubeIds, filterDims, result);
-            
-            return result;
+    @Override
+    public Map<Integer, Estimate> estimateCount(String groupByDimName, Map<String, List<Integer>> filterDims) {
+        
+        try {
+            return join(async(AGG_CONTEXT.get()).estimateCount(groupByDimName, filterDims)).getResult();
         } finally {
             AGG_CONTEXT.remove();
         }
     }
-    
+
     /**
+     * Plan of filter on local cube.
      * @author mengran
      *
      */
-    private static class Distinct extends Executee implements Callable<Map<Integer, RoaringBitmap>> {
+    private static class Explain extends Executee implements Callable<Map<String, Plan>> {
 
-        /**
-         * 
-         */
-        private static final long serialVersionUID = 1L;
-        
-        private String indName;
         private Map<String, List<Integer>> filterDims;
-        private String groupDimName;
-        private boolean isDim;
         
-        public Distinct(String indName, boolean isDim, String groupDimName, Map<String, List<Integer>> filterDims) {
+        public Explain() {
+            super();
+        }
+        
+        public Explain(Map<String, List<Integer>> filterDims) {
             super();
-            this.indName = indName;
             this.filterDims = filterDims;
-            this.groupDimName = groupDimName;
-            this.isDim = isDim;
         }
 
         @Override
-        public Map<Integer, RoaringBitmap> call() throws Exception {
+        public Map<String, Plan> call() throws Exception {
             
-            LOGGER.info("Distinct on {}", instance.getCluster().getLocalMember());
-            return impl.miniCube == null ? null : impl.miniCube.distinct(indName, isDim, groupDimName, filterDims);
+            LOGGER.info("Explain on {}", instance.getCluster().getLocalMember());
+            if (impl.miniCube == null) {
+                return null;
+            }
+            PlanMap plans = new PlanMap();
+            plans.put(instance.getCluster().getLocalMember().getStringAttribute("cubeId"), 
+                    impl.miniCube.explain(filterDims));
+            return plans;
+        }
+
+        @Override
+        public int getId() {
+            return EXPLAIN;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeFilter(out, filterDims);
+        }
+
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            filterDims = CompactSerialization.readFilter(in);
         }
         
     }
 
     @Override
-    public Map<Integer, RoaringBitmap> distinct(String distinctName, boolean isDim,
-            String groupByDimName, Map<String, List<Integer>> filterDims) {
+    public Map<String, Plan> explain(Map<String, List<Integer>> filterDims) {
         
         try {
-            Set<String> cubeIds = cubeIds();
-            
-            // Do execute
-            List<Map<Integer, RoaringBitmap>> results = execute(new Distinct(distinctName, isDim, groupByDimName, filterDims), 
-                    cubeIds, hzExecutorTimeout);
-            LOGGER.debug("Distinct {} on {} with filter {} results is {}", distinctName, cubeIds, filterDims, results);
-            
-            Map<Integer, RoaringBitmap> result = new HashMap<Integer, RoaringBitmap>(results.size());
-            results.stream().forEach(new Consumer<Map<Integer, RoaringBitmap>>() {
-
-                @Override
-                public void accept(Map<Integer, RoaringBitmap> t) {
-                    t.forEach((k, v) -> result.merge(k, v, new BiFunction<RoaringBitmap, RoaringBitmap, RoaringBitmap>() {
-
-                        @Override
-                        public RoaringBitmap apply(RoaringBitmap t, RoaringBitmap u) {
-                            return RoaringBitmap.or(t, u);
-                        }
-                    }));
-                }
-            });
-            LOGGER.debug("Distinct {} on {} with filter {} results is {}", distinctName, cubeIds, filterDims, result);
-            return result;
+            return join(async(AGG_CONTEXT.get()).explain(filterDims)).getResult();
         } finally {
             AGG_CONTEXT.remove();
         }
     }
+    
+    /**
+     * Run all of aggregations in one task, they share filtering on node.
+     * @author mengran
+     *
+     */
+    private static class Batch extends Executee implements Callable<BatchResult> {
+        
+        private List<AggregationSpec> specs;
+        
+        public Batch() {
+            super();
+        }
+        
+        public Batch(List<AggregationSpec> specs) {
+            super();
+            this.specs = specs;
+        }
+
+        @Override
+        public BatchResult call() throws Exception {
+            
+            LOGGER.info("Batch {} aggregations on {}", specs.size(), instance.getCluster().getLocalMember());
+            MiniCube miniCube = impl.miniCube;
+            if (miniCube == null) {
+                return null;
+            }
+            return miniCube.batch(() -> {
+                Object[] results = new Object[specs.size()];
+                for (int i = 0; i < specs.size(); i++) {
+                    AggregationSpec spec = specs.get(i);
+                    switch (spec.getType()) {
+                    case SUM:
+                        results[i] = spec.getGroupByDimName() == null 
+                            ? miniCube.sum(spec.getIndName(), spec.getFilterDims()) 
+                            : new DecimalMap(miniCube.sum(spec.getIndName(), spec.getGroupByDimName(), spec.getFilterDims()));
+                        break;
+                    case COUNT:
+                        results[i] = spec.getGroupByDimName() == null 
+                            ? (Object) miniCube.count(spec.getIndName(), spec.getFilterDims()) 
+                            : new LongMap(miniCube.count(spec.getIndName(), spec.getGroupByDimName(), spec.getFilterDims()));
+                        break;
+                    default:
+                        // Distinct-count is counted after merged.
+                        results[i] = new BitmapMap(miniCube.distinct(spec.getIndName(), spec.getIsDim(), 
+                                spec.getGroupByDimName(), spec.getFilterDims()));
+                    }
+                }
+                return new BatchResult(results);
+            });
+        }
+
+        @Override
+        public int getId() {
+            return BATCH;
+        }
+
+        @Override
+        public void writeData(ObjectDataOutput out) throws IOException {
+            
+            CompactSerialization.writeVarLong(out, specs.size());
+            for (AggregationSpec spec : specs) {
+                spec.writeTo(out);
+            }
+        }
 
+        @Override
+        public void readData(ObjectDataInput in) throws IOException {
+            
+            int size = (int) CompactSerialization.readVarLong(in);
+            specs = new ArrayList<AggregationSpec>(size);
+            for (int i = 0; i < size; i++) {
+                specs.add(AggregationSpec.readFrom(in));
+            }
+        }
+        
+    }
+    
     @Override
-    public Map<Integer, Integer> discnt(String distinctName, boolean isDim, String groupByDimName,
-            Map<String, List<Integer>> filterDims) {
+    public List<Object> batch(List<AggregationSpec> specs) {
         
         try {
-            Map<Integer, RoaringBitmap> distinct = distinct(distinctName, isDim, groupByDimName, filterDims);
-            // Count it.
-            Map<Integer, Integer> result = distinct.entrySet().stream().collect(
-                    Collectors.toMap(e -> e.getKey(), e -> e.getValue().getCardinality()));
-            LOGGER.debug("Distinct {} on {} with filter {} results is {}", distinctName, AGG_CONTEXT.get(), filterDims, result);
-            LOGGER.info("Distinct {} on {} with filter {} results size is {}", distinctName, AGG_CONTEXT.get(), filterDims, result.size());
-            return result;
+            return join(async(AGG_CONTEXT.get()).batch(specs)).getResult();
         } finally {
             AGG_CONTEXT.remove();
         }
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.BatchResult;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.BitmapMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.DecimalMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.DigestMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.EstimateMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.GroupDecimalMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.GroupLongMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.HistogramMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.LongMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.MeasureMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.PlanMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.SketchMap;
+import com.github.totyumengr.minicubes.cluster.CompactSerialization.StateMap;
+import com.github.totyumengr.minicubes.core.Condition;
+import com.github.totyumengr.minicubes.core.Estimate;
+import com.github.totyumengr.minicubes.core.Filter;
+import com.github.totyumengr.minicubes.core.GroupKey;
+import com.github.totyumengr.minicubes.core.Having;
+import com.github.totyumengr.minicubes.core.HyperLogLog;
+import com.github.totyumengr.minicubes.core.Plan;
+import com.github.totyumengr.minicubes.core.TDigest;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+
+/**
+ * Round-trip of codec and results, no cluster is needed.
+ * @author mengran
+ *
+ */
+public class CompactSerializationTest {
+    
+    private static final long[] EXTREMES = new long[] {0, 1, -1, 63, -64, 64, 127, 128, 16383, 16384, 
+        Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1};
+    
+    private SerializationService serializationService = new SerializationServiceBuilder()
+        .addDataSerializableFactory(CompactSerialization.FACTORY_ID, CompactSerialization::create).build();
+    
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+    
+    /**
+     * @return read value, all written bytes must be read
+     */
+    private static <T> T roundTrip(Writer writer, Reader<T> reader) throws IOException {
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.write(out);
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        T value = reader.read(in);
+        Assert.assertEquals(0, in.available());
+        return value;
+    }
+    
+    private static int size(Writer writer) throws IOException {
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        return bytes.size();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T roundTrip(Object result) {
+        return (T) serializationService.toObject(serializationService.toData(result));
+    }
+    
+    @Test
+    public void test_1_1_VarLong_and_zigZag() throws Throwable {
+        
+        for (long v : EXTREMES) {
+            Assert.assertEquals(v, (long) roundTrip(out -> CompactSerialization.writeVarLong(out, v), 
+                    CompactSerialization::readVarLong));
+            Assert.assertEquals(v, (long) roundTrip(out -> CompactSerialization.writeZigZag(out, v), 
+                    CompactSerialization::readZigZag));
+        }
+        Assert.assertEquals(1, size(out -> CompactSerialization.writeVarLong(out, 127)));
+        Assert.assertEquals(2, size(out -> CompactSerialization.writeVarLong(out, 128)));
+        Assert.assertEquals(10, size(out -> CompactSerialization.writeVarLong(out, -1)));
+        Assert.assertEquals(1, size(out -> CompactSerialization.writeZigZag(out, -64)));
+        Assert.assertEquals(10, size(out -> CompactSerialization.writeZigZag(out, Long.MIN_VALUE)));
+    }
+    
+    @Test
+    public void test_1_2_Sorted_ints_and_longs() throws Throwable {
+        
+        int[][] ints = new int[][] {{}, {Integer.MIN_VALUE}, {Integer.MAX_VALUE}, {-5, -5, 0, 3}, 
+            {Integer.MIN_VALUE, -1, 0, 20140606, Integer.MAX_VALUE}};
+        for (int[] values : ints) {
+            Assert.assertArrayEquals(values, roundTrip(out -> CompactSerialization.writeSortedInts(out, values), 
+                    CompactSerialization::readSortedInts));
+        }
+        long[][] longs = new long[][] {{}, {Long.MIN_VALUE}, {-5, -5, 0, 3}, 
+            {Long.MIN_VALUE, Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE, Long.MAX_VALUE}};
+        for (long[] values : longs) {
+            Assert.assertArrayEquals(values, roundTrip(out -> CompactSerialization.writeSortedLongs(out, values), 
+                    CompactSerialization::readSortedLongs));
+        }
+        // Dense keys cost one byte per key
+        int[] dense = new int[] {3201, 3202, 3203, 3204, 3205};
+        Assert.assertEquals(1 + 2 + 4, size(out -> CompactSerialization.writeSortedInts(out, dense)));
+    }
+    
+    @Test
+    public void test_1_3_Decimal() throws Throwable {
+        
+        BigDecimal[] values = new BigDecimal[] {BigDecimal.ZERO, new BigDecimal("-0.00"), 
+            new BigDecimal("41612111.56000000"), new BigDecimal("-12345.6789"), new BigDecimal("1E+10"), 
+            BigDecimal.valueOf(Long.MAX_VALUE, 8), BigDecimal.valueOf(Long.MIN_VALUE, 8), 
+            BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE), 
+            new BigDecimal("123456789012345678901234567890.12345678"), 
+            new BigDecimal("-123456789012345678901234567890.12345678")};
+        for (BigDecimal v : values) {
+            // Same scale too
+            Assert.assertEquals(v, roundTrip(out -> CompactSerialization.writeDecimal(out, v), 
+                    CompactSerialization::readDecimal));
+        }
+    }
+    
+    @Test
+    public void test_1_4_Strings() throws Throwable {
+        
+        for (String v : new String[] {null, "", "csm", "中文"}) {
+            Assert.assertEquals(v, roundTrip(out -> CompactSerialization.writeString(out, v), 
+                    CompactSerialization::readString));
+        }
+        List<String> values = Arrays.asList("", "tradeId:3201 1.0E-4", "中文");
+        Assert.assertEquals(values, roundTrip(out -> CompactSerialization.writeStrings(out, values), 
+                CompactSerialization::readStrings));
+    }
+    
+    @Test
+    public void test_2_1_Filter() throws Throwable {
+        
+        Assert.assertNull(roundTrip(out -> CompactSerialization.writeFilter(out, null), 
+                CompactSerialization::readFilter));
+        Map<String, List<Integer>> empty = roundTrip(out -> CompactSerialization.writeFilter(out, 
+                new HashMap<String, List<Integer>>()), CompactSerialization::readFilter);
+        Assert.assertTrue(empty.isEmpty());
+        Assert.assertTrue(Filter.isPlain(empty));
+        
+        // Values of dimension are OR-ed, so they are sorted
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>();
+        filter.put("tradeId", Arrays.asList(3203, Integer.MIN_VALUE, 3201, Integer.MAX_VALUE, -1));
+        filter.put("the_date", null);
+        filter.put("shw_segment", Arrays.asList());
+        Map<String, List<Integer>> plain = roundTrip(out -> CompactSerialization.writeFilter(out, filter), 
+                CompactSerialization::readFilter);
+        Assert.assertFalse(plain instanceof Filter);
+        Assert.assertEquals(Arrays.asList(Integer.MIN_VALUE, -1, 3201, 3203, Integer.MAX_VALUE), plain.get("tradeId"));
+        Assert.assertTrue(plain.containsKey("the_date"));
+        Assert.assertNull(plain.get("the_date"));
+        Assert.assertEquals(Arrays.asList(), plain.get("shw_segment"));
+        
+        Filter where = new Filter(new HashMap<String, List<Integer>>(filter))
+            .measure("csm", Having.gt(new BigDecimal("-10.5")))
+            .measure("csm", Having.le(new BigDecimal("123456789012345678901234567890.1")))
+            .measure("cash", Having.ge(BigDecimal.ZERO))
+            .where(Condition.or(Condition.in("tradeId", 3201, -3202), 
+                    Condition.not(Condition.between("the_date", 20140606, 20140608))));
+        where.put("tradeId", Arrays.asList(Integer.MIN_VALUE, -1, 3201, 3203, Integer.MAX_VALUE));
+        Map<String, List<Integer>> read = roundTrip(out -> CompactSerialization.writeFilter(out, where), 
+                CompactSerialization::readFilter);
+        Assert.assertTrue(read instanceof Filter);
+        Assert.assertEquals(where, read);
+        Assert.assertEquals(where.getMeasures(), Filter.measuresOf(read));
+        Assert.assertEquals(where.getWhere(), Filter.whereOf(read));
+        Assert.assertEquals(Filter.keyOf(where), Filter.keyOf(read));
+        
+        // Only expression
+        Filter only = new Filter().where(Condition.in("tradeId", 3201));
+        Assert.assertEquals(Filter.keyOf(only), Filter.keyOf(roundTrip(out -> CompactSerialization.writeFilter(out, 
+                only), CompactSerialization::readFilter)));
+    }
+    
+    @Test
+    public void test_3_1_Group_maps() throws Throwable {
+        
+        DecimalMap decimals = new DecimalMap();
+        LongMap longs = new LongMap();
+        for (long v : EXTREMES) {
+            decimals.put((int) v, BigDecimal.valueOf(v, 8));
+            longs.put((int) v, v);
+        }
+        decimals.put(20140606, new BigDecimal("-123456789012345678901234567890.12345678"));
+        Assert.assertEquals(decimals, roundTrip(decimals));
+        Assert.assertEquals(longs, roundTrip(longs));
+        
+        GroupDecimalMap groupDecimals = new GroupDecimalMap();
+        GroupLongMap groupLongs = new GroupLongMap();
+        int[][] keys = new int[][] {{Integer.MIN_VALUE, 0, Integer.MAX_VALUE, -1}, 
+            {Integer.MAX_VALUE, Integer.MIN_VALUE, 0, 1}, {20140606, 3201, -3202, 1}, {20140606, 3201, -3202, 2}, 
+            {0, 0, 0, 0}};
+        for (int i = 0; i < keys.length; i++) {
+            groupDecimals.put(GroupKey.of(keys[i]), BigDecimal.valueOf(EXTREMES[i], i));
+            groupLongs.put(GroupKey.of(keys[i]), EXTREMES[EXTREMES.length - 1 - i]);
+        }
+        Assert.assertEquals(groupDecimals, roundTrip(groupDecimals));
+        Assert.assertEquals(groupLongs, roundTrip(groupLongs));
+        
+        GroupLongMap oneDimension = new GroupLongMap();
+        oneDimension.put(GroupKey.of(Integer.MIN_VALUE), 1L);
+        oneDimension.put(GroupKey.of(Integer.MAX_VALUE), 2L);
+        Assert.assertEquals(oneDimension, roundTrip(oneDimension));
+        
+        // Empty
+        for (Map<?, ?> e : Arrays.<Map<?, ?>>asList(new DecimalMap(), new LongMap(), new GroupDecimalMap(), 
+                new GroupLongMap(), new BitmapMap(), new StateMap(), new SketchMap(), new DigestMap(), 
+                new HistogramMap(), new EstimateMap(), new PlanMap(), new MeasureMap())) {
+            Map<?, ?> read = roundTrip(e);
+            Assert.assertEquals(e.getClass(), read.getClass());
+            Assert.assertTrue(read.isEmpty());
+        }
+    }
+    
+    @Test
+    public void test_3_2_Bitmap_and_state_maps() throws Throwable {
+        
+        BitmapMap bitmaps = new BitmapMap();
+        bitmaps.put(-1, RoaringBitmap.bitmapOf(0, 1, 65535, 65536, 903884));
+        bitmaps.put(3201, new RoaringBitmap());
+        Assert.assertEquals(bitmaps, roundTrip(bitmaps));
+        
+        StateMap states = new StateMap();
+        states.put(Integer.MIN_VALUE, new BigDecimal[] {BigDecimal.ONE, null, new BigDecimal("-1E+100")});
+        states.put(3201, new BigDecimal[] {null, null, null});
+        StateMap readStates = roundTrip(states);
+        Assert.assertEquals(states.keySet(), readStates.keySet());
+        states.forEach((k, v) -> Assert.assertArrayEquals(v, readStates.get(k)));
+        
+        HistogramMap histograms = new HistogramMap();
+        histograms.put(-1, new long[] {0, Long.MAX_VALUE, 1});
+        histograms.put(Integer.MAX_VALUE, new long[] {3, 0, 0});
+        HistogramMap readHistograms = roundTrip(histograms);
+        Assert.assertEquals(histograms.keySet(), readHistograms.keySet());
+        histograms.forEach((k, v) -> Assert.assertArrayEquals(v, readHistograms.get(k)));
+        
+        EstimateMap estimates = new EstimateMap();
+        // Not rounded, it is merged with estimates of other cubes
+        estimates.put(3201, new Estimate(-12.3456789012345, 0.25, Long.MAX_VALUE));
+        Estimate read = ((EstimateMap) roundTrip(estimates)).get(3201);
+        Assert.assertEquals(-12.3456789012345, read.doubleValue(), 0);
+        Assert.assertEquals(0.25, read.getVariance(), 0);
+        Assert.assertEquals(Long.MAX_VALUE, read.getRows());
+    }
+    
+    @Test
+    public void test_3_3_Sketch_digest_and_plan_maps() throws Throwable {
+        
+        SketchMap sketches = new SketchMap();
+        HyperLogLog sparse = new HyperLogLog(HyperLogLog.MAX_PRECISION);
+        HyperLogLog dense = new HyperLogLog(HyperLogLog.MIN_PRECISION);
+        for (int i = 0; i < 1000; i++) {
+            sparse.add(i * 31);
+            dense.add(-i);
+        }
+        sketches.put(3201, sparse);
+        sketches.put(-3202, dense);
+        sketches.put(Integer.MAX_VALUE, new HyperLogLog(HyperLogLog.MIN_PRECISION));
+        SketchMap readSketches = roundTrip(sketches);
+        Assert.assertEquals(sketches.keySet(), readSketches.keySet());
+        sketches.forEach((k, v) -> {
+            Assert.assertEquals(v.getPrecision(), readSketches.get(k).getPrecision());
+            Assert.assertArrayEquals(v.getRegisters(), readSketches.get(k).getRegisters());
+            Assert.assertEquals(v.cardinality(), readSketches.get(k).cardinality());
+        });
+        
+        DigestMap digests = new DigestMap();
+        TDigest digest = new TDigest();
+        for (int i = -5000; i < 5000; i++) {
+            digest.add(i * 0.5);
+        }
+        digests.put(3201, digest);
+        digests.put(Integer.MIN_VALUE, new TDigest(50));
+        DigestMap readDigests = roundTrip(digests);
+        Assert.assertEquals(digests.keySet(), readDigests.keySet());
+        digests.forEach((k, v) -> {
+            TDigest r = readDigests.get(k);
+            Assert.assertEquals(v.getCompression(), r.getCompression(), 0);
+            Assert.assertEquals(v.getCount(), r.getCount());
+            Assert.assertArrayEquals(v.getWeights(), r.getWeights());
+            Assert.assertEquals(Arrays.toString(v.getMeans()), Arrays.toString(r.getMeans()));
+        });
+        Assert.assertEquals(digest.getMin(), readDigests.get(3201).getMin(), 0);
+        Assert.assertEquals(digest.getMax(), readDigests.get(3201).getMax(), 0);
+        Assert.assertEquals(digest.quantile(0.99), readDigests.get(3201).quantile(0.99), 0);
+        
+        PlanMap plans = new PlanMap();
+        Plan plan = new Plan();
+        plan.setAccess(Plan.Access.BITMAP_ITERATION);
+        plan.setParallel(true);
+        plan.setParallelRows(Long.MAX_VALUE);
+        plan.setTotalRows(903885);
+        plan.setEstimatedRows(0);
+        plan.setExact(false);
+        plan.setSteps(Arrays.asList("tradeId:3201 1.0E-4", "csm [> 10] by range index"));
+        plans.put("20140606::minicubes@127.0.0.1:5701", plan);
+        Plan empty = new Plan();
+        empty.setAccess(Plan.Access.FULL_SCAN);
+        plans.put("20140607::minicubes@127.0.0.1:5702", empty);
+        PlanMap readPlans = roundTrip(plans);
+        // Order of cubes is kept
+        Assert.assertEquals(Arrays.asList(plans.keySet().toArray()), Arrays.asList(readPlans.keySet().toArray()));
+        plans.forEach((k, v) -> Assert.assertEquals(v.toString(), readPlans.get(k).toString()));
+    }
+    
+    @Test
+    public void test_3_4_Batch_result() throws Throwable {
+        
+        DecimalMap decimals = new DecimalMap();
+        decimals.put(-1, new BigDecimal("-0.01"));
+        MeasureMap measures = new MeasureMap();
+        measures.put("sum(csm)", new BigDecimal("41612111.56000000"));
+        measures.put("count(csm)", 903885L);
+        measures.put("max(csm)", null);
+        BatchResult batch = new BatchResult(new Object[] {decimals, null, new BigDecimal("-1E+100"), measures, 
+            new BatchResult(new Object[0])});
+        
+        Object[] results = ((BatchResult) roundTrip(batch)).getResults();
+        Assert.assertEquals(5, results.length);
+        Assert.assertEquals(decimals, results[0]);
+        Assert.assertNull(results[1]);
+        Assert.assertEquals(new BigDecimal("-1E+100"), results[2]);
+        Assert.assertEquals(measures, results[3]);
+        Assert.assertEquals(Arrays.asList(measures.keySet().toArray()), 
+                Arrays.asList(((MeasureMap) results[3]).keySet().toArray()));
+        Assert.assertEquals(0, ((BatchResult) results[4]).getResults().length);
+    }
+    
+}
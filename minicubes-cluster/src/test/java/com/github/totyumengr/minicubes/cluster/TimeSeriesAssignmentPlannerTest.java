@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.cluster;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.totyumengr.minicubes.cluster.TimeSeriesAssignmentPlanner.MemberCapacity;
+
+/**
+ * @author mengran
+ *
+ */
+public class TimeSeriesAssignmentPlannerTest {
+    
+    /**
+     * 1MB heap holds 1000 records.
+     */
+    private TimeSeriesAssignmentPlanner planner = new TimeSeriesAssignmentPlanner(1000, 0.1);
+    
+    private static Map<String, Long> sizes(Object... seriesAndSizes) {
+        
+        Map<String, Long> sizes = new HashMap<String, Long>();
+        for (int i = 0; i < seriesAndSizes.length; i += 2) {
+            sizes.put((String) seriesAndSizes[i], ((Number) seriesAndSizes[i + 1]).longValue());
+        }
+        return sizes;
+    }
+    
+    @Test
+    public void test_1_1_Heap_capacity() {
+        
+        // Faster member can not hold it
+        List<MemberCapacity> members = Arrays.asList(new MemberCapacity("m1", 1000, 8, 100000, null), 
+                new MemberCapacity("m2", 8000, 2, 10000, null));
+        Map<String, String> plan = planner.plan(members, sizes("20140606", 5000000));
+        Assert.assertEquals("20140606", plan.get("m2"));
+        Assert.assertNull(plan.get("m1"));
+        
+        // Exactly full
+        plan = planner.plan(members, sizes("20140606", 1000000));
+        Assert.assertEquals("20140606", plan.get("m1"));
+        
+        // Nobody can hold it, biggest heap is chosen
+        plan = planner.plan(members, sizes("20140606", 50000000));
+        Assert.assertEquals("20140606", plan.get("m2"));
+        
+        // Largest takes the only member can hold it, smaller one goes to other
+        plan = planner.plan(members, sizes("20140606", 5000000, "20140607", 900000));
+        Assert.assertEquals("20140606", plan.get("m2"));
+        Assert.assertEquals("20140607", plan.get("m1"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void test_1_2_More_timeSeries_than_members() {
+        
+        planner.plan(Arrays.asList(new MemberCapacity("m1", 8000, 2, 10000, null)), 
+                sizes("20140606", 1000, "20140607", 1000));
+    }
+    
+    @Test
+    public void test_2_1_Prefer_faster_member() {
+        
+        List<MemberCapacity> members = Arrays.asList(new MemberCapacity("m1", 8000, 8, 20000, null), 
+                new MemberCapacity("m2", 8000, 8, 50000, null), new MemberCapacity("m3", 8000, 8, 30000, null));
+        Map<String, String> plan = planner.plan(members, sizes("20140606", 4000000, "20140607", 1000000));
+        Assert.assertEquals("20140606", plan.get("m2"));
+        Assert.assertEquals("20140607", plan.get("m3"));
+        Assert.assertNull(plan.get("m1"));
+        Assert.assertEquals(80, planner.maxLatency(members, sizes("20140606", 4000000, "20140607", 1000000), plan), 
+                0.001);
+        
+        // Not measured member counts by its cores
+        members = Arrays.asList(new MemberCapacity("m1", 8000, 8, 0, null), 
+                new MemberCapacity("m2", 8000, 2, 30000, null));
+        Assert.assertEquals(8 * TimeSeriesAssignmentPlanner.DEFAULT_CORE_THROUGHPUT, members.get(0).getThroughput());
+        Assert.assertEquals("20140606", planner.plan(members, sizes("20140606", 4000000)).get("m1"));
+    }
+    
+    @Test
+    public void test_2_2_Prefer_current_holder() {
+        
+        List<MemberCapacity> members = Arrays.asList(new MemberCapacity("m1", 8000, 8, 30000, null), 
+                new MemberCapacity("m2", 8000, 8, 30000, "20140606"));
+        Assert.assertEquals("20140606", planner.plan(members, sizes("20140606", 4000000)).get("m2"));
+    }
+    
+    @Test
+    public void test_3_1_Rebalance_threshold() {
+        
+        Map<String, Long> sizes = sizes("20140606", 4000000, "20140607", 1000000);
+        // 5% faster than current, below threshold
+        List<MemberCapacity> members = Arrays.asList(new MemberCapacity("m1", 8000, 8, 20000, "20140606"), 
+                new MemberCapacity("m2", 8000, 8, 21000, "20140607"));
+        Map<String, String> plan = planner.plan(members, sizes);
+        Assert.assertEquals("20140606", plan.get("m2"));
+        Assert.assertFalse(planner.needRebalance(members, sizes, plan));
+        
+        // 50% faster
+        members = Arrays.asList(new MemberCapacity("m1", 8000, 8, 20000, "20140606"), 
+                new MemberCapacity("m2", 8000, 8, 40000, "20140607"));
+        plan = planner.plan(members, sizes);
+        Assert.assertEquals("20140606", plan.get("m2"));
+        Assert.assertTrue(planner.needRebalance(members, sizes, plan));
+        
+        // Not held time-series always need it
+        members = Arrays.asList(new MemberCapacity("m1", 8000, 8, 20000, "20140606"), 
+                new MemberCapacity("m2", 8000, 8, 20000, null));
+        plan = planner.plan(members, sizes);
+        Assert.assertEquals("20140606", plan.get("m1"));
+        Assert.assertTrue(planner.needRebalance(members, sizes, plan));
+    }
+    
+}
@@ -25,6 +25,9 @@ import org.roaringbitmap.RoaringBitmap;
  * <p>FIXME: Need re-design aggregations API, make it fluent and rich for calculating.
  * 
  * <p>Define supported calculation operations.
+ * 
+ * <p>Filter dimensions can be a {@link Filter} which has range predicates on indicates too, like "WHERE 
+ * {dimension1 IN (a, b, c)} AND {indicate1 &gt; 10}".
  * @author mengran
  *
  */
@@ -60,7 +63,103 @@ public interface Aggregations {
      * @return result of sum operation
      */
     Map<Integer, BigDecimal> sum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Sum calculation of given indicate with filter, grouper and filter on sum. It equal to "SELECT SUM({indName}) 
+     * FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)} group by {dimension3} HAVING SUM({indName}) &gt; 1000".
+     * @param indName indicate name for sum
+     * @param groupByDimName group by dimensions
+     * @param filterDims filter dimensions
+     * @param having filter on sum of group
+     * @return result of sum operation
+     * @since 0.3
+     */
+    Map<Integer, BigDecimal> sum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims, 
+            Having having);
+    
+    /**
+     * Top-N of sum calculation of given indicate with filter and grouper. It equal to "SELECT SUM({indName}) FROM 
+     * {fact table of cube} WHERE {dimension1 IN (a, b, c)} group by {dimension3} ORDER BY 2 DESC LIMIT {limit}".
+     * @param indName indicate name for sum, should be non-negative for pruning on cluster
+     * @param groupByDimName group by dimensions
+     * @param filterDims filter dimensions
+     * @param limit N of top-N
+     * @return result of sum operation in descending order, ties are in ascending order of group
+     * @since 0.3
+     */
+    Map<Integer, BigDecimal> topSum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims, 
+            int limit);
+    
+    /**
+     * Sum calculation of given indicate with filter and multiple groupers. It equal to "SELECT SUM({indName}) FROM 
+     * {fact table of cube} WHERE {dimension1 IN (a, b, c)} AND {dimension2 IN (d, e, f)} group by {dimension3}, 
+     * {dimension4}".
+     * @param indName indicate name for sum
+     * @param groupByDimNames group by dimensions, in order of {@link GroupKey}
+     * @param filterDims filter dimensions
+     * @return result of sum operation, key is {@link GroupKey} of dimension values
+     * @since 0.3
+     */
+    Map<GroupKey, BigDecimal> sum(String indName, List<String> groupByDimNames, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Sum calculation of given indicate with filter and grouping sets in one pass. It equal to "SELECT SUM({indName}) 
+     * FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)} GROUP BY GROUPING SETS (({dimension2}), 
+     * ({dimension3}, {dimension4}), ())".
+     * @param indName indicate name for sum
+     * @param groupingSets group by dimensions of every set, empty set means grand total
+     * @param filterDims filter dimensions
+     * @return result of every set in order of given sets, key is {@link GroupKey} of dimension values
+     * @since 0.3
+     */
+    List<Map<GroupKey, BigDecimal>> sumGroupingSets(String indName, List<List<String>> groupingSets, 
+            Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Sum calculation of given indicates in one pass. It equal to "SELECT SUM({indName1}), SUM({indName2}) FROM 
+     * {fact table of cube} WHERE {dimension1 IN (a, b, c)} AND {dimension2 IN (d, e, f)}".
+     * @param indNames indicate names for sum
+     * @param filterDims filter dimensions
+     * @return indicate name to result of sum operation, in order of given names
+     * @since 0.3
+     */
+    Map<String, BigDecimal> sum(List<String> indNames, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Sum calculation of given indicates with filter and grouper in one pass. It equal to "SELECT SUM({indName1}), 
+     * SUM({indName2}) FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)} AND {dimension2 IN (d, e, f)} 
+     * group by {dimension3}".
+     * @param indNames indicate names for sum
+     * @param groupByDimName group by dimensions
+     * @param filterDims filter dimensions
+     * @return indicate name to result of sum operation, in order of given names
+     * @since 0.3
+     */
+    Map<String, Map<Integer, BigDecimal>> sum(List<String> indNames, String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
 
+    /**
+     * Calculation of given measures in one pass. It equal to "SELECT SUM({indName1}) / SUM({indName2}), 
+     * AVG({indName1}), MAX({indName2}) FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)}".
+     * @param measures measures for calculation
+     * @param filterDims filter dimensions
+     * @return result of every measure in order of given measures, see {@link Measure#evaluate(List, BigDecimal[])}
+     * @since 0.3
+     */
+    List<BigDecimal> measures(List<Measure> measures, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Calculation of given measures with grouper in one pass. It equal to "SELECT SUM({indName1}) / SUM({indName2}), 
+     * AVG({indName1}), MAX({indName2}) FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)} group by {dimension3}".
+     * @param measures measures for calculation
+     * @param groupByDimName group by dimensions
+     * @param filterDims filter dimensions
+     * @return result of every measure in order of given measures, see {@link Measure#evaluate(List, BigDecimal[])}
+     * @since 0.3
+     */
+    Map<Integer, List<BigDecimal>> measures(List<Measure> measures, String groupByDimName, 
+            Map<String, List<Integer>> filterDims);
+    
     /**
      * Count calculation of given indicate with filter. It equal to "SELECT COUNT({indName}) FROM {fact table of cube}".
      * @param indName indicate name for count
@@ -89,6 +188,32 @@ public interface Aggregations {
      * @since 0.3
      */
     Map<Integer, Long> count(String indName, String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Count calculation of given indicate with filter, grouper and filter on count. It equal to "SELECT 
+     * COUNT({indName}) FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)} group by {dimension3} HAVING 
+     * COUNT({indName}) &gt; 1000".
+     * @param indName indicate name for count
+     * @param groupByDimName group by dimensions
+     * @param filterDims filter dimensions
+     * @param having filter on count of group
+     * @return result of count operation
+     * @since 0.3
+     */
+    Map<Integer, Long> count(String indName, String groupByDimName, Map<String, List<Integer>> filterDims, 
+            Having having);
+    
+    /**
+     * Count calculation of given indicate with filter and multiple groupers. It equal to "SELECT COUNT({indName}) FROM 
+     * {fact table of cube} WHERE {dimension1 IN (a, b, c)} AND {dimension2 IN (d, e, f)} group by {dimension3}, 
+     * {dimension4}".
+     * @param indName indicate name for count
+     * @param groupByDimNames group by dimensions, in order of {@link GroupKey}
+     * @param filterDims filter dimensions
+     * @return result of count operation, key is {@link GroupKey} of dimension values
+     * @since 0.3
+     */
+    Map<GroupKey, Long> count(String indName, List<String> groupByDimNames, Map<String, List<Integer>> filterDims);
 
     
     /**
@@ -115,4 +240,87 @@ public interface Aggregations {
     Map<Integer, Integer> discnt(String distinctName, boolean isDim,
             String groupByDimName, Map<String, List<Integer>> filterDims);
     
+    /**
+     * Sketch of distinct values of every group, sketches of same group can be merged.
+     * @param distinctName same to distinct
+     * @param isDim same to distinct
+     * @param groupByDimName same to distinct
+     * @param filterDims same to distinct
+     * @param precision precision of {@link HyperLogLog}
+     * @return sketch of distinct values of group
+     * @since 0.3
+     */
+    Map<Integer, HyperLogLog> sketch(String distinctName, boolean isDim, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, int precision);
+    
+    /**
+     * Approximate distinct-count calculation, depends {@link #sketch(String, boolean, String, Map, int)} operation.
+     * @param distinctName same to distinct
+     * @param isDim same to distinct
+     * @param groupByDimName same to distinct
+     * @param filterDims same to distinct
+     * @param precision precision of {@link HyperLogLog}, standard error is <code>1.04 / sqrt(2^precision)</code>
+     * @return result of approximate distinct-count operation
+     * @since 0.3
+     */
+    Map<Integer, Integer> discnt(String distinctName, boolean isDim, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, int precision);
+    
+    /**
+     * Sketch of values of given indicate in every group, sketches of same group can be merged.
+     * @param indName indicate name
+     * @param groupByDimName group by dimension, all in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @return {@link TDigest} of every group
+     * @since 0.3
+     */
+    Map<Integer, TDigest> digest(String indName, String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Approximate quantiles of given indicate, like median and p95. It equal to "SELECT PERCENTILE({indName}, 0.5)
+     * FROM {fact table of cube} WHERE {dimension1 IN (a, b, c)} group by {dimension3}".
+     * @param indName indicate name
+     * @param groupByDimName group by dimension, all in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @param quantiles quantiles between 0 and 1
+     * @return values of quantiles of every group that formated using {@value #IND_SCALE}, depends 
+     *  {@link #digest(String, String, Map)} operation
+     * @since 0.3
+     */
+    Map<Integer, List<BigDecimal>> quantiles(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, double[] quantiles);
+    
+    /**
+     * Exact histogram of given indicate with fixed bins. Bin <code>i</code> counts values in 
+     * <code>[edges[i - 1], edges[i])</code>, first bin counts values less than <code>edges[0]</code> and last one 
+     * counts values not less than last edge.
+     * @param indName indicate name
+     * @param groupByDimName group by dimension, all in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @param edges sorted edges of bins
+     * @return counts of <code>edges.length + 1</code> bins of every group
+     * @since 0.3
+     */
+    Map<Integer, long[]> histogram(String indName, String groupByDimName, Map<String, List<Integer>> filterDims, 
+            double[] edges);
+    
+    /**
+     * Approximate sum which only scans sampled records, for quick look of large cube.
+     * @param indName indicate name
+     * @param groupByDimName group by dimension, all in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @return {@link Estimate} of sum of every group
+     * @since 0.3
+     */
+    Map<Integer, Estimate> estimateSum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims);
+    
+    /**
+     * Approximate count which only scans sampled records.
+     * @param groupByDimName group by dimension, all in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @return {@link Estimate} of count of every group
+     * @since 0.3
+     */
+    Map<Integer, Estimate> estimateCount(String groupByDimName, Map<String, List<Integer>> filterDims);
+    
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.IntPredicate;
+import java.util.function.ToLongFunction;
+
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import com.github.totyumengr.minicubes.core.FactTable.Record;
+
+/**
+ * <a href="http://www.cs.umb.edu/~poneil/SIGBSTMH.pdf">Bit-sliced index</a> of one indicate, answer range predicate
+ * like <code>csm &gt; 10</code> by bitmap operations instead of scanning records.
+ *
+ * <p>Values are quantized to <code>round(value * 10^{@value #SCALE})</code> and shifted by the minimum, slice
+ * <code>i</code> holds records which bit <code>i</code> of shifted value is 1. Quantization is monotone, so records
+ * out of the bucket of constant are decided by slices, records near the bucket are checked by actual value.
+ * 
+ * <p>Quantization is lossless for indicate of integer values like <code>click</code>, so sum of records is the 
+ * weighted sum of slice cardinalities and no record is touched, see {@link #sum(RoaringBitmap)}.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class BitSlicedIndex {
+
+    /**
+     * Decimal digits kept by quantization.
+     */
+    public static final int SCALE = 2;
+
+    private static final double FACTOR = Math.pow(10, SCALE);
+
+    private final long offset;
+    private final RoaringBitmap exists;
+    private final RoaringBitmap[] slices;
+    /**
+     * All values are integer, means quantization is lossless.
+     */
+    private final boolean integral;
+
+    private BitSlicedIndex(long offset, RoaringBitmap exists, RoaringBitmap[] slices, boolean integral) {
+        super();
+        this.offset = offset;
+        this.exists = exists;
+        this.slices = slices;
+        this.integral = integral;
+    }
+
+    static long quantize(double value) {
+        return Math.round(value * FACTOR);
+    }
+
+    /**
+     * @param records records of fact-table
+     * @param indName indicate name
+     * @return bit-sliced index of indicate
+     */
+    static BitSlicedIndex build(Map<Integer, Record> records, String indName) {
+
+        boolean integral = true;
+        for (Record r : records.values()) {
+            double value = r.getInd(indName).doubleValue();
+            integral = integral && value == Math.rint(value) && Math.abs(value) < (1L << 52) / FACTOR;
+        }
+        return build(records, r -> quantize(r.getInd(indName).doubleValue()), integral);
+    }
+
+    /**
+     * @param records records of fact-table
+     * @param value encoded value of record, it is compared by {@link #between(long, long)}
+     * @param integral encoded value is exact value multiplied by <code>10^{@value #SCALE}</code>
+     * @return bit-sliced index of encoded values
+     */
+    static BitSlicedIndex build(Map<Integer, Record> records, ToLongFunction<Record> value, boolean integral) {
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Record r : records.values()) {
+            long q = value.applyAsLong(r);
+            min = Math.min(min, q);
+            max = Math.max(max, q);
+        }
+        RoaringBitmap exists = new RoaringBitmap();
+        if (records.isEmpty()) {
+            return new BitSlicedIndex(0, exists, new RoaringBitmap[0], true);
+        }
+        RoaringBitmap[] slices = new RoaringBitmap[Long.SIZE - Long.numberOfLeadingZeros(max - min)];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new RoaringBitmap();
+        }
+        for (Entry<Integer, Record> e : records.entrySet()) {
+            int id = e.getKey();
+            exists.add(id);
+            long v = value.applyAsLong(e.getValue()) - min;
+            for (int i = 0; v != 0; i++, v >>>= 1) {
+                if ((v & 1) != 0) {
+                    slices[i].add(id);
+                }
+            }
+        }
+        exists.trim();
+        for (RoaringBitmap s : slices) {
+            s.trim();
+        }
+        return new BitSlicedIndex(min, exists, slices, integral);
+    }
+
+    /**
+     * Compare algorithm of O'Neil and Quass, one pass from highest slice to lowest.
+     * @param c quantized constant
+     * @return records which quantized value is [less than, greater than] <code>c</code>
+     */
+    private RoaringBitmap[] compare(long c) {
+
+        long v = c - offset;
+        if (v < 0) {
+            return new RoaringBitmap[] {new RoaringBitmap(), exists.clone()};
+        }
+        if (Long.SIZE - Long.numberOfLeadingZeros(v) > slices.length) {
+            return new RoaringBitmap[] {exists.clone(), new RoaringBitmap()};
+        }
+        RoaringBitmap lt = new RoaringBitmap();
+        RoaringBitmap gt = new RoaringBitmap();
+        RoaringBitmap eq = exists.clone();
+        for (int i = slices.length - 1; i >= 0; i--) {
+            if ((v >>> i & 1) != 0) {
+                lt.or(RoaringBitmap.andNot(eq, slices[i]));
+                eq.and(slices[i]);
+            } else {
+                gt.or(RoaringBitmap.and(eq, slices[i]));
+                eq.andNot(slices[i]);
+            }
+        }
+        return new RoaringBitmap[] {lt, gt};
+    }
+
+    /**
+     * @param having range predicate on actual value
+     * @param exact check actual value of record by <code>having</code>, only called for records near bucket of
+     *  constant
+     * @return records which match <code>having</code>
+     */
+    public RoaringBitmap filter(Having having, IntPredicate exact) {
+
+        // One bucket more at both sides, double rounding of value and constant can not cross it.
+        long c = quantize(having.getValue().doubleValue());
+        RoaringBitmap lt = compare(c - 1)[0];
+        RoaringBitmap gt = compare(c + 1)[1];
+        RoaringBitmap near = RoaringBitmap.andNot(RoaringBitmap.andNot(exists, lt), gt);
+        RoaringBitmap result = new RoaringBitmap();
+        for (IntIterator it = near.getIntIterator(); it.hasNext();) {
+            int id = it.next();
+            if (exact.test(id)) {
+                result.add(id);
+            }
+        }
+        switch (having.getOp()) {
+        case GT:
+        case GE:
+            result.or(gt);
+            break;
+        case LT:
+        case LE:
+            result.or(lt);
+            break;
+        case NE:
+            result.or(lt);
+            result.or(gt);
+            break;
+        default:
+            break;
+        }
+        return result;
+    }
+
+    /**
+     * @param from encoded value, inclusive
+     * @param to encoded value, inclusive
+     * @return records which encoded value is between <code>from</code> and <code>to</code>
+     */
+    RoaringBitmap between(long from, long to) {
+
+        RoaringBitmap result = RoaringBitmap.andNot(exists, compare(from)[0]);
+        result.andNot(compare(to)[1]);
+        return result;
+    }
+
+    /**
+     * @param having range predicate
+     * @param records records of fact-table
+     * @param indName indicate name
+     * @return records which match <code>having</code>
+     */
+    RoaringBitmap filter(Having having, Map<Integer, Record> records, String indName) {
+        return filter(having, id -> having.test(new BigDecimal(records.get(id).getInd(indName).toSciNotation())));
+    }
+
+    /**
+     * Sum of records is <code>offset * |found| + sum(2^i * |found AND slice_i|)</code>.
+     * @param found records to sum, <code>null</code> means all
+     * @return sum that formated using {@value Aggregations#IND_SCALE}
+     * @throws IllegalStateException when values are not integer, sum of slices is not exact
+     */
+    public BigDecimal sum(RoaringBitmap found) {
+
+        if (!integral) {
+            throw new IllegalStateException("Quantization of " + this + " is not lossless.");
+        }
+        RoaringBitmap f = found == null ? exists : RoaringBitmap.and(found, exists);
+        BigInteger sum = BigInteger.valueOf(offset).multiply(BigInteger.valueOf(f.getCardinality()));
+        for (int i = 0; i < slices.length; i++) {
+            sum = sum.add(BigInteger.valueOf(RoaringBitmap.and(f, slices[i]).getCardinality()).shiftLeft(i));
+        }
+        return new BigDecimal(sum, SCALE).setScale(Aggregations.IND_SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * @return <code>true</code> when {@link #sum(RoaringBitmap)} is supported
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * @return memory used by slices
+     */
+    public int getSizeInBytes() {
+
+        int size = exists.getSizeInBytes();
+        for (RoaringBitmap s : slices) {
+            size += s.getSizeInBytes();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "BitSlicedIndex [offset=" + offset + ", slices=" + slices.length + ", integral=" + integral + "]";
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * Bitmap operations of filter evaluation.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+final class Bitmaps {
+
+    private Bitmaps() {
+        super();
+    }
+
+    /**
+     * Bitmap with its size, size is not calculated again when it is compared in heap.
+     */
+    private static class Sized implements Comparable<Sized> {
+
+        private final RoaringBitmap bitmap;
+        private final int size;
+
+        Sized(RoaringBitmap bitmap) {
+            this.bitmap = bitmap;
+            this.size = bitmap.getSizeInBytes();
+        }
+
+        @Override
+        public int compareTo(Sized o) {
+            return Integer.compare(size, o.size);
+        }
+    }
+
+    /**
+     * Multi-way union which always ORs two smallest bitmaps in heap, so large bitmaps are merged few times instead
+     * of growing one accumulator by thousands of small ORs.
+     * @param bitmaps to union, they are not changed.
+     * @return union, it is a new bitmap which can be changed by caller.
+     */
+    static RoaringBitmap union(Collection<RoaringBitmap> bitmaps) {
+
+        if (bitmaps.isEmpty()) {
+            return new RoaringBitmap();
+        }
+        if (bitmaps.size() == 1) {
+            return bitmaps.iterator().next().clone();
+        }
+        PriorityQueue<Sized> heap = new PriorityQueue<Sized>(bitmaps.size());
+        for (RoaringBitmap b : bitmaps) {
+            heap.add(new Sized(b));
+        }
+        while (heap.size() > 1) {
+            heap.add(new Sized(RoaringBitmap.or(heap.poll().bitmap, heap.poll().bitmap)));
+        }
+        return heap.poll().bitmap;
+    }
+
+    /**
+     * @param bitmaps bitmaps
+     * @return sum of cardinalities, upper bound of cardinality of union
+     */
+    static long cardinality(Collection<RoaringBitmap> bitmaps) {
+
+        long cardinality = 0;
+        for (RoaringBitmap b : bitmaps) {
+            cardinality += b.getCardinality();
+        }
+        return cardinality;
+    }
+
+}
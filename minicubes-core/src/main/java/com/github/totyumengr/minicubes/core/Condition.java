@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.util.Assert;
+
+/**
+ * Expression of filter on dimension values, for example "tradeId NOT IN (3201) AND (productLine = 1 OR postId =
+ * 51631)" is <code>and(not(in("tradeId", 3201)), or(in("productLine", 1), in("postId", 51631)))</code>.
+ *
+ * <p>It is evaluated by bitmap operations over index only: leaves are multi-way union of bitmaps of dimension
+ * values, {@link Op#BETWEEN} is answered by ordered index of dimension and {@link Op#NOT} is computed against 
+ * bitmap of all records of fact-table.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class Condition {
+
+    public enum Op {
+        /**
+         * Dimension value is one of {@link Condition#getValues()}.
+         */
+        IN,
+        /**
+         * Dimension value is between first and second of {@link Condition#getValues()}, both inclusive.
+         */
+        BETWEEN,
+        AND, OR, NOT
+    }
+
+    private Op op;
+    private String dimName;
+    private List<Integer> values;
+    private List<Condition> children;
+
+    public Condition() {
+        super();
+    }
+
+    public Condition(Op op, String dimName, List<Integer> values, List<Condition> children) {
+        super();
+        this.op = op;
+        this.dimName = dimName;
+        this.values = values;
+        this.children = children;
+    }
+
+    public static Condition in(String dimName, Integer... values) {
+        return new Condition(Op.IN, dimName, Arrays.asList(values), null);
+    }
+
+    public static Condition between(String dimName, int from, int to) {
+        return new Condition(Op.BETWEEN, dimName, Arrays.asList(from, to), null);
+    }
+
+    public static Condition and(Condition... children) {
+        return new Condition(Op.AND, null, null, new ArrayList<Condition>(Arrays.asList(children)));
+    }
+
+    public static Condition or(Condition... children) {
+        return new Condition(Op.OR, null, null, new ArrayList<Condition>(Arrays.asList(children)));
+    }
+
+    public static Condition not(Condition child) {
+        return new Condition(Op.NOT, null, null, new ArrayList<Condition>(Arrays.asList(child)));
+    }
+
+    /**
+     * @param data data of fact-table
+     * @return records which match this, it is a new bitmap which can be changed by caller.
+     */
+    RoaringBitmap evaluate(Map<String, Object> data) {
+
+        Assert.notNull(op, "Operation of condition can not be null.");
+        @SuppressWarnings("unchecked")
+        Map<String, RoaringBitmap> bitmapIndex = (Map<String, RoaringBitmap>) data.get("bitmapIndex");
+        List<RoaringBitmap> ors = new ArrayList<RoaringBitmap>();
+        switch (op) {
+        case IN:
+            Assert.notNull(values, "Values of " + dimName + " can not be null.");
+            for (Integer v : values) {
+                RoaringBitmap o = bitmapIndex.get(dimName + ":" + v);
+                if (o != null) {
+                    ors.add(o);
+                }
+            }
+            return Bitmaps.union(ors);
+        case BETWEEN:
+            Assert.isTrue(values != null && values.size() == 2, "Between of " + dimName + " needs two values.");
+            @SuppressWarnings("unchecked")
+            DimRangeIndex index = ((Map<String, DimRangeIndex>) data.get("dimRangeIndex")).get(dimName);
+            if (index != null) {
+                return index.between(values.get(0), values.get(1));
+            }
+            // Scan values of dimension
+            String prefix = dimName + ":";
+            for (Entry<String, RoaringBitmap> e : bitmapIndex.entrySet()) {
+                if (e.getKey().startsWith(prefix)) {
+                    int v = Integer.parseInt(e.getKey().substring(prefix.length()));
+                    if (v >= values.get(0) && v <= values.get(1)) {
+                        ors.add(e.getValue());
+                    }
+                }
+            }
+            return Bitmaps.union(ors);
+        case NOT:
+            Assert.isTrue(children != null && children.size() == 1, "Not needs one operand.");
+            return RoaringBitmap.andNot((RoaringBitmap) data.get("rows"), children.get(0).evaluate(data));
+        case AND:
+            Assert.notEmpty(children, "Operands of " + op + " can not be empty.");
+            RoaringBitmap result = children.get(0).evaluate(data);
+            for (int i = 1; i < children.size() && result.getCardinality() > 0; i++) {
+                result.and(children.get(i).evaluate(data));
+            }
+            return result;
+        default:
+            Assert.notEmpty(children, "Operands of " + op + " can not be empty.");
+            for (Condition c : children) {
+                ors.add(c.evaluate(data));
+            }
+            return Bitmaps.union(ors);
+        }
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public void setOp(Op op) {
+        this.op = op;
+    }
+
+    public String getDimName() {
+        return dimName;
+    }
+
+    public void setDimName(String dimName) {
+        this.dimName = dimName;
+    }
+
+    public List<Integer> getValues() {
+        return values;
+    }
+
+    public void setValues(List<Integer> values) {
+        this.values = values;
+    }
+
+    public List<Condition> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<Condition> children) {
+        this.children = children;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Condition)) {
+            return false;
+        }
+        Condition other = (Condition) o;
+        return op == other.op && Objects.equals(dimName, other.dimName) && Objects.equals(values, other.values)
+                && Objects.equals(children, other.children);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(op, dimName, values, children);
+    }
+
+    @Override
+    public String toString() {
+        return dimName == null ? op + "" + children : dimName + " " + op + " " + values;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import com.github.totyumengr.minicubes.core.FactTable.Record;
+
+/**
+ * Ordered index of one dimension for BETWEEN filter, like date range in a quarter cube. Distinct values are sorted,
+ * rank of value of every record is bit-sliced, so a range of values is a range of ranks which is answered by
+ * <code>2 * log2(count of values)</code> bitmap operations, no matter how many values are in range.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+final class DimRangeIndex {
+
+    /**
+     * Sorted distinct values.
+     */
+    private final int[] values;
+    private final BitSlicedIndex ranks;
+
+    private DimRangeIndex(int[] values, BitSlicedIndex ranks) {
+        super();
+        this.values = values;
+        this.ranks = ranks;
+    }
+
+    /**
+     * @param records records of fact-table
+     * @param dimName dimension name
+     * @return ordered index of dimension
+     */
+    static DimRangeIndex build(Map<Integer, Record> records, String dimName) {
+
+        int[] values = records.values().stream().mapToInt(r -> r.getDim(dimName)).distinct().sorted().toArray();
+        return new DimRangeIndex(values, BitSlicedIndex.build(records,
+                r -> Arrays.binarySearch(values, r.getDim(dimName)), false));
+    }
+
+    /**
+     * @param from dimension value, inclusive
+     * @param to dimension value, inclusive
+     * @return records which dimension value is between <code>from</code> and <code>to</code>
+     */
+    RoaringBitmap between(int from, int to) {
+
+        int lo = Arrays.binarySearch(values, from);
+        lo = lo < 0 ? -lo - 1 : lo;
+        int hi = Arrays.binarySearch(values, to);
+        hi = hi < 0 ? -hi - 2 : hi;
+        return lo > hi ? new RoaringBitmap() : ranks.between(lo, hi);
+    }
+
+    /**
+     * @param value dimension value of record
+     * @return rank of value in sorted distinct values, it is dictionary code of value.
+     */
+    int rank(int value) {
+        return Arrays.binarySearch(values, value);
+    }
+
+    /**
+     * @param rank dictionary code of value
+     * @return dimension value
+     */
+    int value(int rank) {
+        return values[rank];
+    }
+
+    int getValueCount() {
+        return values.length;
+    }
+
+    int getSizeInBytes() {
+        return values.length * 4 + ranks.getSizeInBytes();
+    }
+
+    @Override
+    public String toString() {
+        return "DimRangeIndex [values=" + values.length + ", ranks=" + ranks + "]";
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.math.BigDecimal;
+
+/**
+ * Approximate sum or count which is estimated from sample of records, with 95% confidence interval
+ * <code>value &plusmn; error</code>.
+ *
+ * <p>Every record is sampled with probability <code>p</code> independently, so <code>sum(x) / p</code> of sampled
+ * records is unbiased (Horvitz-Thompson) and its variance is estimated by <code>(1 - p) / p^2 * sum(x^2)</code>.
+ * Samples of cubes are disjoint, so estimates of cubes are merged by adding values and variances.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class Estimate {
+
+    /**
+     * Quantile of standard normal distribution for 95% confidence.
+     */
+    public static final double Z_95 = 1.96;
+
+    private double value;
+    private double variance;
+    private long rows;
+
+    /**
+     * @param value estimated value
+     * @param variance estimated variance of value
+     * @param rows count of sampled records
+     */
+    public Estimate(double value, double variance, long rows) {
+        super();
+        this.value = value;
+        this.variance = variance;
+        this.rows = rows;
+    }
+
+    /**
+     * @param sum sum of values of sampled records, count of them for count estimate
+     * @param sumOfSquares sum of squares of values of sampled records, count of them for count estimate
+     * @param rows count of sampled records
+     * @param rate probability of record is sampled
+     * @return estimate of all records
+     */
+    public static Estimate of(double sum, double sumOfSquares, long rows, double rate) {
+        return new Estimate(sum / rate, (1 - rate) / (rate * rate) * sumOfSquares, rows);
+    }
+
+    /**
+     * @param other estimate of disjoint records, it is not changed.
+     * @return this
+     */
+    public Estimate merge(Estimate other) {
+
+        value += other.value;
+        variance += other.variance;
+        rows += other.rows;
+        return this;
+    }
+
+    /**
+     * @return estimated value that formated using {@value Aggregations#IND_SCALE}
+     */
+    public BigDecimal getValue() {
+        return new BigDecimal(value).setScale(Aggregations.IND_SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * @return estimated value which is not rounded, estimates are merged by it so rounding happens once
+     */
+    public double doubleValue() {
+        return value;
+    }
+
+    /**
+     * @return half width of 95% confidence interval that formated using {@value Aggregations#IND_SCALE}
+     */
+    public BigDecimal getError() {
+        return new BigDecimal(Z_95 * Math.sqrt(variance)).setScale(Aggregations.IND_SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+    public double getVariance() {
+        return variance;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return "Estimate [value=" + getValue() + ", error=" + getError() + ", rows=" + rows + "]";
+    }
+
+}
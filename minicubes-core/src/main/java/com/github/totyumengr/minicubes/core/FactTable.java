@@ -65,6 +65,39 @@ public class FactTable {
      */
     private Map<String, RoaringBitmap> bitmapIndex = new HashMap<String, RoaringBitmap>();
     
+    /**
+     * Same bitmaps of {@link #bitmapIndex} by dimension name and value, so values of one dimension are found without
+     * walking all of indexes.
+     * @since 0.3
+     */
+    private Map<String, Map<Integer, RoaringBitmap>> dimBitmaps = new HashMap<String, Map<Integer, RoaringBitmap>>();
+    
+    /**
+     * Bit-sliced index of every indicate for range filter and sum. Key is indicate name.
+     * @since 0.3
+     */
+    private Map<String, BitSlicedIndex> rangeIndex = new HashMap<String, BitSlicedIndex>();
+    
+    /**
+     * Ordered index of every dimension for BETWEEN filter. Key is dimension name.
+     * @since 0.3
+     */
+    private Map<String, DimRangeIndex> dimRangeIndex = new HashMap<String, DimRangeIndex>();
+    
+    /**
+     * All records, negation of filter is computed against it.
+     * @since 0.3
+     */
+    private RoaringBitmap rows = new RoaringBitmap();
+    
+    /**
+     * Uniform sample of records for approximate aggregations, every record is in it with probability 
+     * {@link #sampleRate} by hash of its id.
+     * @since 0.3
+     */
+    private RoaringBitmap sample = new RoaringBitmap();
+    private double sampleRate = FactTableBuilder.DEFAULT_SAMPLE_RATE;
+    
     /**
      * Protect fact-table merge action.
      */
@@ -158,6 +191,12 @@ public class FactTable {
      *
      */
     public static class FactTableBuilder {
+        /**
+         * Sample 1% records by default.
+         * @since 0.3
+         */
+        public static final double DEFAULT_SAMPLE_RATE = 0.01;
+        
         private static final ThreadLocal<FactTable> IN_BUILDING = new ThreadLocal<FactTable>();
         
         private static List<FactTableBuilderUserDefineDimProvider> providers = new ArrayList<FactTableBuilderUserDefineDimProvider>();
@@ -213,6 +252,22 @@ public class FactTable {
             return this;
         }
         
+        /**
+         * @param sampleRate probability of record is in sample, between 0 exclusive and 1 inclusive
+         * @return this
+         * @since 0.3
+         */
+        public FactTableBuilder sampleRate(double sampleRate) {
+            
+            FactTable current = IN_BUILDING.get();
+            if (current == null) {
+                throw new IllegalStateException("Current building is not started, call #build first.");
+            }
+            Assert.isTrue(sampleRate > 0 && sampleRate <= 1, "Sample rate must be in (0, 1].");
+            current.sampleRate = sampleRate;
+            return this;
+        }
+        
         public FactTableBuilder addDimColumns(List<String> dimColumnNames) {
             
             FactTable current = IN_BUILDING.get();
@@ -371,24 +426,112 @@ public class FactTable {
                 usedBytes = usedBytes + e.getValue().getSizeInBytes();
                 LOGGER.debug("Index for {} of {} records", e.getKey(), e.getValue().getCardinality());
             }
+            current.buildDimBitmaps();
+            current.buildRangeIndex();
+            for (Entry<String, BitSlicedIndex> e : current.rangeIndex.entrySet()) {
+                if (usedBytes > (1024 * 1024 * 1024)) {
+                    usedKb = usedKb + (usedBytes / 1024);
+                    usedBytes = 0;
+                }
+                usedBytes = usedBytes + e.getValue().getSizeInBytes();
+                LOGGER.debug("Range index for {} is {}", e.getKey(), e.getValue());
+            }
+            for (Entry<String, DimRangeIndex> e : current.dimRangeIndex.entrySet()) {
+                if (usedBytes > (1024 * 1024 * 1024)) {
+                    usedKb = usedKb + (usedBytes / 1024);
+                    usedBytes = 0;
+                }
+                usedBytes = usedBytes + e.getValue().getSizeInBytes();
+                LOGGER.debug("Dimension range index for {} is {}", e.getKey(), e.getValue());
+            }
+            current.buildRows();
+            usedBytes = usedBytes + current.rows.getSizeInBytes() + current.sample.getSizeInBytes();
+            LOGGER.debug("Sample of rate {} has {} records", current.sampleRate, current.sample.getCardinality());
             usedKb = usedKb + (usedBytes / 1024);
             LOGGER.info("Build completed: name {} with {} dimension columns, {} measure columns and {} records, {} indexes used {} kb.", 
                     current.meta.name, current.meta.dimColumnNames.size(), current.meta.indColumnNames.size(), 
-                    current.records.size(), current.bitmapIndex.size(), usedKb);
+                    current.records.size(), current.bitmapIndex.size() + current.rangeIndex.size() + current.dimRangeIndex.size(), usedKb);
             
             return current;
         }
     }
     
+    private void buildDimBitmaps() {
+        
+        Map<String, Map<Integer, RoaringBitmap>> dimBitmaps = new HashMap<String, Map<Integer, RoaringBitmap>>();
+        for (Entry<String, RoaringBitmap> e : bitmapIndex.entrySet()) {
+            int i = e.getKey().lastIndexOf(':');
+            dimBitmaps.computeIfAbsent(e.getKey().substring(0, i), k -> new HashMap<Integer, RoaringBitmap>())
+                .put(Integer.valueOf(e.getKey().substring(i + 1)), e.getValue());
+        }
+        this.dimBitmaps = dimBitmaps;
+    }
+    
+    private void buildRangeIndex() {
+        
+        Map<String, BitSlicedIndex> rangeIndex = new HashMap<String, BitSlicedIndex>();
+        for (String indName : meta.indColumnNames.keySet()) {
+            rangeIndex.put(indName, BitSlicedIndex.build(records, indName));
+        }
+        this.rangeIndex = rangeIndex;
+        Map<String, DimRangeIndex> dimRangeIndex = new HashMap<String, DimRangeIndex>();
+        for (String dimName : meta.dimColumnNames.keySet()) {
+            dimRangeIndex.put(dimName, DimRangeIndex.build(records, dimName));
+        }
+        this.dimRangeIndex = dimRangeIndex;
+    }
+    
+    /**
+     * Bitmap of all records and Bernoulli sample of them by hash of id, so same record is always in or out of sample 
+     * of same rate.
+     */
+    private void buildRows() {
+        
+        long threshold = (long) (sampleRate * (1L << 32));
+        RoaringBitmap rows = new RoaringBitmap();
+        RoaringBitmap sample = new RoaringBitmap();
+        for (Integer id : records.keySet()) {
+            rows.add(id);
+            if ((mix(id) & 0xffffffffL) < threshold) {
+                sample.add(id);
+            }
+        }
+        rows.trim();
+        sample.trim();
+        this.rows = rows;
+        this.sample = sample;
+    }
+    
+    /**
+     * Finalizer of MurmurHash3, ids are sequential mostly.
+     */
+    private static int mix(int h) {
+        
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+    
     /**
-     * @return records of key "records" and indexes of key "bitmapIndex".
+     * @return records of key "records", indexes of key "bitmapIndex" and same ones by dimension and value of key 
+     *  "dimBitmaps", bit-sliced indexes of key "rangeIndex", 
+     *  ordered indexes of dimensions of key "dimRangeIndex", bitmap of all records of key "rows", sampled records of key "sample" and its rate of key "sampleRate".
      */
     Map<String, Object> getData() {
         try {
             readWriteLock.readLock().lock();
-            Map<String, Object> data = new HashMap<String, Object>(2);
+            Map<String, Object> data = new HashMap<String, Object>(16);
             data.put("records", records);
             data.put("bitmapIndex", bitmapIndex);
+            data.put("dimBitmaps", dimBitmaps);
+            data.put("rangeIndex", rangeIndex);
+            data.put("dimRangeIndex", dimRangeIndex);
+            data.put("rows", rows);
+            data.put("sample", sample);
+            data.put("sampleRate", sampleRate);
             return data;    
         } finally {
             readWriteLock.readLock().unlock();
@@ -422,6 +565,10 @@ public class FactTable {
                     }
                 });
             }
+            buildDimBitmaps();
+            // Merged records may replace old ones, so slices are rebuilt instead of OR-ed.
+            buildRangeIndex();
+            buildRows();
         } finally {
             readWriteLock.writeLock().unlock();
         }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filter dimensions with range predicates on indicates, like "WHERE tradeId IN (3201) AND csm &gt; 10". It is still
+ * a map of filter dimensions, so all aggregation methods accept it, predicates on indicates are answered by
+ * {@link BitSlicedIndex} and AND-ed with bitmaps of dimensions.
+ * 
+ * <p>Negation, OR across dimensions and ranges of dimension values are expressed by {@link Condition}, see 
+ * {@link #where(Condition)}.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class Filter extends HashMap<String, List<Integer>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Predicates of indicate, all are AND-ed.
+     */
+    private Map<String, List<Having>> measures = new LinkedHashMap<String, List<Having>>();
+
+    /**
+     * Expression on dimensions, AND-ed with others.
+     */
+    private Condition where;
+
+    public Filter() {
+        super();
+    }
+
+    /**
+     * @param filterDims filter dimensions, can be <code>null</code>
+     */
+    public Filter(Map<String, List<Integer>> filterDims) {
+        super(filterDims == null ? new HashMap<String, List<Integer>>(0) : filterDims);
+    }
+
+    /**
+     * @param indName indicate name
+     * @param having range predicate on value of indicate
+     * @return this
+     */
+    public Filter measure(String indName, Having having) {
+
+        measures.computeIfAbsent(indName, k -> new ArrayList<Having>()).add(having);
+        return this;
+    }
+
+    /**
+     * @param condition expression on dimensions, AND-ed with previous one
+     * @return this
+     */
+    public Filter where(Condition condition) {
+
+        where = where == null ? condition : Condition.and(where, condition);
+        return this;
+    }
+
+    public Map<String, List<Having>> getMeasures() {
+        return measures;
+    }
+
+    public void setMeasures(Map<String, List<Having>> measures) {
+        this.measures = measures;
+    }
+
+    public Condition getWhere() {
+        return where;
+    }
+
+    public void setWhere(Condition where) {
+        this.where = where;
+    }
+
+    /**
+     * @param filterDims filter dimensions
+     * @return predicates on indicates of given filter, empty when it is not a {@link Filter}.
+     */
+    public static Map<String, List<Having>> measuresOf(Map<String, List<Integer>> filterDims) {
+
+        if (filterDims instanceof Filter) {
+            return ((Filter) filterDims).measures;
+        }
+        return new HashMap<String, List<Having>>(0);
+    }
+
+    /**
+     * @param filterDims filter dimensions
+     * @return expression on dimensions of given filter, <code>null</code> when it is not a {@link Filter}.
+     */
+    public static Condition whereOf(Map<String, List<Integer>> filterDims) {
+        return filterDims instanceof Filter ? ((Filter) filterDims).where : null;
+    }
+
+    /**
+     * @param filterDims filter dimensions
+     * @return <code>false</code> when given filter has predicates on indicates or expression on dimensions
+     */
+    public static boolean isPlain(Map<String, List<Integer>> filterDims) {
+        return measuresOf(filterDims).isEmpty() && whereOf(filterDims) == null;
+    }
+
+    /**
+     * @param filterDims filter dimensions
+     * @return key of given filter for caches, it equals to key of other filter only when they have same filter 
+     * dimensions, predicates on indicates and expression. Filter compares entries only like other maps, do not use
+     * filter itself as key.
+     */
+    public static List<Object> keyOf(Map<String, List<Integer>> filterDims) {
+        return Arrays.asList(new HashMap<String, List<Integer>>(filterDims), 
+                new HashMap<String, List<Having>>(measuresOf(filterDims)), whereOf(filterDims));
+    }
+
+    @Override
+    public String toString() {
+        return isPlain(this) ? super.toString() : super.toString() + " " + measures + (where == null ? "" 
+                : " " + where);
+    }
+
+}
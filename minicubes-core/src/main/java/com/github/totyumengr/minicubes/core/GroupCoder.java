@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.Map;
+
+import com.github.totyumengr.minicubes.core.FactTable.Record;
+
+/**
+ * Hash key of multi-dimensions group-by on records of one fact-table. It is dictionary codes which are packed by
+ * {@link GroupKey#pack(int...)} when count of values of every group-by dimension fits into its bits, otherwise 
+ * {@link GroupKey} of values.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+final class GroupCoder {
+
+    private final String[] dimNames;
+    /**
+     * Dictionaries of group-by dimensions, <code>null</code> when codes can not be packed.
+     */
+    private final DimRangeIndex[] dictionaries;
+
+    /**
+     * @param dimNames group-by dimensions
+     * @param data data of fact-table which records are grouped
+     */
+    GroupCoder(String[] dimNames, Map<String, Object> data) {
+
+        super();
+        this.dimNames = dimNames;
+        @SuppressWarnings("unchecked")
+        Map<String, DimRangeIndex> dimRangeIndex = (Map<String, DimRangeIndex>) data.get("dimRangeIndex");
+        long capacity = 1L << Math.min(GroupKey.bits(dimNames.length), Integer.SIZE);
+        DimRangeIndex[] dictionaries = new DimRangeIndex[dimNames.length];
+        for (int i = 0; i < dimNames.length; i++) {
+            dictionaries[i] = dimRangeIndex.get(dimNames[i]);
+            if (dictionaries[i] == null || dictionaries[i].getValueCount() > capacity) {
+                dictionaries = null;
+                break;
+            }
+        }
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * @param record record of fact-table
+     * @return hash key of group of record, <code>Long</code> or {@link GroupKey}
+     */
+    Object encode(Record record) {
+
+        int[] values = new int[dimNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.getDim(dimNames[i]);
+            if (dictionaries != null) {
+                values[i] = dictionaries[i].rank(values[i]);
+            }
+        }
+        return dictionaries == null ? GroupKey.of(values) : (Object) GroupKey.pack(values);
+    }
+
+    /**
+     * @param key hash key from {@link #encode(Record)}
+     * @return key of dimension values
+     */
+    GroupKey decode(Object key) {
+
+        if (dictionaries == null) {
+            return (GroupKey) key;
+        }
+        int[] values = GroupKey.unpack((Long) key, dimNames.length);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = dictionaries[i].value(values[i]);
+        }
+        return GroupKey.of(values);
+    }
+
+}
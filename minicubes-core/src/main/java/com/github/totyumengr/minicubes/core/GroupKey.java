@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Composite key of multi-dimensions group-by, it holds dimension values in order of group-by dimensions. Key of none
+ * dimension (grand total) has no values.
+ *
+ * <p>Hash aggregation on cube does not create key objects for every record: dictionary codes of values, which are
+ * ranks of them in ordered index of dimension, are packed into one <code>long</code> by {@link #pack(int...)}, and 
+ * translated back into values once per group. 64 bits are split equally, every dimension has <code>64 / size</code> 
+ * bits, so it is enough for 65536 values of every dimension when group by {@value #MAX_SIZE} dimensions.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public final class GroupKey implements Comparable<GroupKey> {
+
+    /**
+     * Max count of group-by dimensions.
+     */
+    public static final int MAX_SIZE = 4;
+
+    private final int[] values;
+
+    private GroupKey(int[] values) {
+        super();
+        this.values = values;
+    }
+
+    /**
+     * @param values dimension values in order of group-by dimensions
+     * @return key of values
+     */
+    public static GroupKey of(int... values) {
+
+        Assert.isTrue(values.length <= MAX_SIZE, "Only support group by 0 to " + MAX_SIZE + " dimensions.");
+        return new GroupKey(values.clone());
+    }
+
+    /**
+     * @param size count of group-by dimensions
+     * @return bits of dictionary code of every dimension
+     */
+    static int bits(int size) {
+
+        Assert.isTrue(size >= 0 && size <= MAX_SIZE, "Only support group by 0 to " + MAX_SIZE + " dimensions.");
+        return size == 0 ? Long.SIZE : Long.SIZE / size;
+    }
+
+    /**
+     * @param codes dictionary codes in order of group-by dimensions, every one is in [0, 2^{@link #bits(int)})
+     * @return packed codes
+     */
+    static long pack(int... codes) {
+
+        int bits = bits(codes.length);
+        long key = 0;
+        for (int c : codes) {
+            key = bits == Long.SIZE ? c : (key << bits) | c;
+        }
+        return key;
+    }
+
+    /**
+     * @param key packed codes
+     * @param size count of group-by dimensions
+     * @return dictionary codes in order of group-by dimensions
+     */
+    static int[] unpack(long key, int size) {
+
+        int bits = bits(size);
+        long mask = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+        int[] codes = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            codes[i] = (int) (key & mask);
+            key = bits == Long.SIZE ? 0 : key >>> bits;
+        }
+        return codes;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param i index of group-by dimension
+     * @return value of dimension
+     */
+    public int get(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return dimension values in order of group-by dimensions
+     */
+    public List<Integer> toList() {
+
+        List<Integer> list = new ArrayList<Integer>(values.length);
+        for (int v : values) {
+            list.add(v);
+        }
+        return list;
+    }
+
+    @Override
+    public int compareTo(GroupKey o) {
+
+        for (int i = 0; i < Math.min(values.length, o.values.length); i++) {
+            int c = Integer.compare(values[i], o.values[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(values.length, o.values.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof GroupKey && Arrays.equals(values, ((GroupKey) o).values));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /**
+     * @return comma delimited dimension values
+     */
+    @Override
+    public String toString() {
+
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            s.append(i == 0 ? "" : ",").append(values[i]);
+        }
+        return s.toString();
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Filter on aggregated value of group, like "HAVING SUM({indName}) &gt; 1000".
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class Having implements Predicate<Number> {
+
+    public enum Operator {
+        GT, GE, LT, LE, EQ, NE
+    }
+
+    private Operator op;
+    private BigDecimal value;
+
+    public Having() {
+        super();
+    }
+
+    public Having(Operator op, BigDecimal value) {
+        super();
+        this.op = op;
+        this.value = value;
+    }
+
+    public static Having gt(BigDecimal value) {
+        return new Having(Operator.GT, value);
+    }
+
+    public static Having ge(BigDecimal value) {
+        return new Having(Operator.GE, value);
+    }
+
+    public static Having lt(BigDecimal value) {
+        return new Having(Operator.LT, value);
+    }
+
+    public static Having le(BigDecimal value) {
+        return new Having(Operator.LE, value);
+    }
+
+    @Override
+    public boolean test(Number t) {
+
+        int c = (t instanceof BigDecimal ? (BigDecimal) t : new BigDecimal(t.toString())).compareTo(value);
+        switch (op) {
+        case GT:
+            return c > 0;
+        case GE:
+            return c >= 0;
+        case LT:
+            return c < 0;
+        case LE:
+            return c <= 0;
+        case EQ:
+            return c == 0;
+        case NE:
+            return c != 0;
+        default:
+            throw new UnsupportedOperationException("Unsupported operator " + op);
+        }
+    }
+
+    /**
+     * @param group result of group-by
+     * @param <K> group key type
+     * @param <V> aggregated value type
+     * @return groups which aggregated value matches
+     */
+    public <K, V extends Number> Map<K, V> filter(Map<K, V> group) {
+
+        Map<K, V> result = new HashMap<K, V>();
+        group.forEach((k, v) -> {
+            if (test(v)) {
+                result.put(k, v);
+            }
+        });
+        return result;
+    }
+
+    public Operator getOp() {
+        return op;
+    }
+
+    public void setOp(Operator op) {
+        this.op = op;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public void setValue(BigDecimal value) {
+        this.value = value;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (op == null ? 0 : op.hashCode()) + (value == null ? 0 : value.stripTrailingZeros().hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if (!(obj instanceof Having)) {
+            return false;
+        }
+        Having other = (Having) obj;
+        return op == other.op && (value == null ? other.value == null 
+                : other.value != null && value.compareTo(other.value) == 0);
+    }
+
+    @Override
+    public String toString() {
+        return "Having [op=" + op + ", value=" + value + "]";
+    }
+
+}
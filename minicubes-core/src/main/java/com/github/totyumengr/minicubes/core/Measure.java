@@ -0,0 +1,274 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Measure of aggregation: base aggregation of indicate (sum, min, max, count and avg), or expression over measures,
+ * for example CTR is <code>divide(sum("click"), sum("shw"))</code>.
+ *
+ * <p>Measures are calculated from <b>partial states</b> which can be merged: sum, min, max of indicate and count.
+ * Cube accumulates states in one scan, states of cubes are merged and then measures are evaluated, so avg and
+ * ratio are right on cluster.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class Measure {
+
+    public enum Op {
+        SUM, MIN, MAX, COUNT, AVG, ADD, SUBTRACT, MULTIPLY, DIVIDE
+    }
+
+    private Op op;
+    private String indName;
+    private Measure left;
+    private Measure right;
+
+    public Measure() {
+        super();
+    }
+
+    public Measure(Op op, String indName, Measure left, Measure right) {
+        super();
+        this.op = op;
+        this.indName = indName;
+        this.left = left;
+        this.right = right;
+    }
+
+    public static Measure sum(String indName) {
+        return new Measure(Op.SUM, indName, null, null);
+    }
+
+    public static Measure min(String indName) {
+        return new Measure(Op.MIN, indName, null, null);
+    }
+
+    public static Measure max(String indName) {
+        return new Measure(Op.MAX, indName, null, null);
+    }
+
+    public static Measure avg(String indName) {
+        return new Measure(Op.AVG, indName, null, null);
+    }
+
+    public static Measure count() {
+        return new Measure(Op.COUNT, null, null, null);
+    }
+
+    public static Measure add(Measure left, Measure right) {
+        return new Measure(Op.ADD, null, left, right);
+    }
+
+    public static Measure subtract(Measure left, Measure right) {
+        return new Measure(Op.SUBTRACT, null, left, right);
+    }
+
+    public static Measure multiply(Measure left, Measure right) {
+        return new Measure(Op.MULTIPLY, null, left, right);
+    }
+
+    public static Measure divide(Measure left, Measure right) {
+        return new Measure(Op.DIVIDE, null, left, right);
+    }
+
+    // ------------------------------ Partial states ------------------------------
+
+    private static String state(Op op, String indName) {
+        return op == Op.COUNT ? Op.COUNT.name() : op.name() + ":" + indName;
+    }
+
+    /**
+     * @param state one of {@link #states(List)}
+     * @return operation of state, one of {@link Op#SUM}, {@link Op#MIN}, {@link Op#MAX} and {@link Op#COUNT}
+     */
+    public static Op opOf(String state) {
+        return Op.valueOf(state.split(":")[0]);
+    }
+
+    /**
+     * @param state one of {@link #states(List)}
+     * @return indicate name of state, <code>null</code> for {@link Op#COUNT}
+     */
+    public static String indNameOf(String state) {
+        return state.contains(":") ? state.split(":", 2)[1] : null;
+    }
+
+    private void collect(List<String> states) {
+
+        switch (op) {
+        case SUM:
+        case MIN:
+        case MAX:
+        case COUNT:
+            Assert.isTrue(op == Op.COUNT || indName != null, "Indicate name of " + op + " can not be null.");
+            if (!states.contains(state(op, indName))) {
+                states.add(state(op, indName));
+            }
+            break;
+        case AVG:
+            Measure.sum(indName).collect(states);
+            Measure.count().collect(states);
+            break;
+        default:
+            Assert.isTrue(left != null && right != null, "Operands of " + op + " can not be null.");
+            left.collect(states);
+            right.collect(states);
+        }
+    }
+
+    /**
+     * @param measures to calculate
+     * @return partial states which given measures depend on, every state is accumulated once.
+     */
+    public static List<String> states(List<Measure> measures) {
+
+        Assert.notEmpty(measures, "Measures can not empty.");
+        List<String> states = new ArrayList<String>();
+        for (Measure m : measures) {
+            m.collect(states);
+        }
+        return states;
+    }
+
+    /**
+     * @param states partial states
+     * @return values of states when nothing is accumulated, <code>null</code> for min and max.
+     */
+    public static BigDecimal[] empty(List<String> states) {
+
+        BigDecimal[] values = new BigDecimal[states.size()];
+        for (int i = 0; i < values.length; i++) {
+            Op op = opOf(states.get(i));
+            values[i] = op == Op.SUM || op == Op.COUNT ? BigDecimal.ZERO : null;
+        }
+        return values;
+    }
+
+    /**
+     * Merge values of states <code>y</code> into <code>x</code>.
+     * @param states partial states
+     * @param x merge into
+     * @param y merge from
+     * @return x
+     */
+    public static BigDecimal[] merge(List<String> states, BigDecimal[] x, BigDecimal[] y) {
+
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] == null || y[i] == null) {
+                x[i] = x[i] == null ? y[i] : x[i];
+                continue;
+            }
+            switch (opOf(states.get(i))) {
+            case MIN:
+                x[i] = x[i].min(y[i]);
+                break;
+            case MAX:
+                x[i] = x[i].max(y[i]);
+                break;
+            default:
+                x[i] = x[i].add(y[i]);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * @param states partial states
+     * @param values merged values of states
+     * @return value of measure, <code>null</code> when any operand is <code>null</code> or divided by zero.
+     */
+    public BigDecimal evaluate(List<String> states, BigDecimal[] values) {
+
+        switch (op) {
+        case SUM:
+        case MIN:
+        case MAX:
+        case COUNT:
+            return values[states.indexOf(state(op, indName))];
+        case AVG:
+            return divide(values[states.indexOf(state(Op.SUM, indName))], values[states.indexOf(state(Op.COUNT, null))]);
+        default:
+            BigDecimal l = left.evaluate(states, values);
+            BigDecimal r = right.evaluate(states, values);
+            if (l == null || r == null) {
+                return null;
+            }
+            switch (op) {
+            case ADD:
+                return l.add(r);
+            case SUBTRACT:
+                return l.subtract(r);
+            case MULTIPLY:
+                return l.multiply(r).setScale(Aggregations.IND_SCALE, BigDecimal.ROUND_HALF_UP);
+            default:
+                return divide(l, r);
+            }
+        }
+    }
+
+    private static BigDecimal divide(BigDecimal l, BigDecimal r) {
+
+        if (l == null || r == null || r.signum() == 0) {
+            return null;
+        }
+        return l.divide(r, Aggregations.IND_SCALE, BigDecimal.ROUND_HALF_UP);
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public void setOp(Op op) {
+        this.op = op;
+    }
+
+    public String getIndName() {
+        return indName;
+    }
+
+    public void setIndName(String indName) {
+        this.indName = indName;
+    }
+
+    public Measure getLeft() {
+        return left;
+    }
+
+    public void setLeft(Measure left) {
+        this.left = left;
+    }
+
+    public Measure getRight() {
+        return right;
+    }
+
+    public void setRight(Measure right) {
+        this.right = right;
+    }
+
+    @Override
+    public String toString() {
+        return left == null ? state(op, indName) : op + "(" + left + ", " + right + ")";
+    }
+
+}
@@ -16,22 +16,39 @@
 package com.github.totyumengr.minicubes.core;
 
 import java.math.BigDecimal;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import md.math.DoubleDouble;
 
+import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
 
 import com.github.totyumengr.minicubes.core.FactTable.Record;
 
@@ -58,19 +75,71 @@ public class MiniCube implements Aggregations {
      */
     public static final int DUMMY_FILTER_DIM = -999999999;
     
+    /**
+     * Max values of group-by dimension which is counted by intersecting bitmaps of values instead of scanning records.
+     * @since 0.3
+     */
+    public static final int INDEX_ONLY_GROUPS = 4096;
+    
+    /**
+     * Plain filter which is estimated to match at least this ratio of records is checked on records instead of 
+     * building bitmaps.
+     * @since 0.3
+     */
+    public static final double PREDICATE_SCAN_SELECTIVITY = 0.5;
+    
+    /**
+     * Filter bitmap which has less than this ratio of records is iterated instead of scanning all records.
+     * @since 0.3
+     */
+    public static final double BITMAP_ITERATION_SELECTIVITY = 0.2;
+    
+    /**
+     * Records are read in parallel when plan reads at least this count of them, until both modes are timed on 
+     * scans of similar size, see {@link ParallelTuner}.
+     * @since 0.3
+     */
+    public static final long PARALLEL_MIN_ROWS = 100000;
+    
     FactTable factTable;
     
+    /**
+     * <code>false</code> forces sequential stream, otherwise mode of every query is chosen by {@link #tuners}.
+     */
     private volatile boolean parallelMode = true;
+    
+    /**
+     * Timings of scans by every kind of access, iterating bitmap and scanning records cost differently per row.
+     */
+    private final Map<Plan.Access, ParallelTuner> tuners = new EnumMap<Plan.Access, ParallelTuner>(Plan.Access.class);
+    
+    /**
+     * Timings of unions of filter dimensions, rows of them are sum of cardinalities of bitmaps.
+     */
+    private final ParallelTuner unionTuner = new ParallelTuner(PARALLEL_MIN_ROWS);
+    
+    /**
+     * Filter result of current batch, see {@link #batch(Supplier)}
+     */
+    private static final ThreadLocal<Map<List<Object>, RoaringBitmap>> BATCH_FILTERS = 
+            new ThreadLocal<Map<List<Object>, RoaringBitmap>>();
 
     // FIXME: Add dimension table
     public MiniCube(FactTable factTable) {
         super();
         this.factTable = factTable;
+        for (Plan.Access access : Plan.Access.values()) {
+            tuners.put(access, new ParallelTuner(PARALLEL_MIN_ROWS));
+        }
     }
     
+    /**
+     * @param parallelMode <code>true</code> chooses sequential or parallel stream for every query by its rows and 
+     * observed timings, <code>false</code> always uses sequential stream.
+     */
     public void setParallelMode(boolean parallelMode) {
-        this.parallelMode = parallelMode;
         LOGGER.info("Set stream's mode from {} to {} of {}", this.parallelMode, parallelMode, factTable.meta.name);
+        this.parallelMode = parallelMode;
     }
     
     public void merge(MiniCube merge) {
@@ -82,73 +151,280 @@ public class MiniCube implements Aggregations {
     }
     
     // ---------------------------- Aggregation API ----------------------------
-
-    private Stream<Entry<Integer, Record>> filter(Map<String, List<Integer>> filterDims) {
+    
+    /**
+     * Run aggregations of given batch in current thread, aggregations which have same filter dimensions share one 
+     * filtering by bitmap index.
+     * @param batch call aggregation methods of this cube
+     * @param <T> result type
+     * @return result of batch
+     * @since 0.3
+     */
+    public <T> T batch(Supplier<T> batch) {
         
-        if (filterDims == null) {
-            filterDims = new HashMap<String, List<Integer>>(0);
+        boolean outermost = BATCH_FILTERS.get() == null;
+        if (outermost) {
+            BATCH_FILTERS.set(new HashMap<List<Object>, RoaringBitmap>());
         }
+        try {
+            return batch.get();
+        } finally {
+            if (outermost) {
+                LOGGER.info("Batch shared {} filters.", BATCH_FILTERS.get().size());
+                BATCH_FILTERS.remove();
+            }
+        }
+    }
+    
+    private RoaringBitmap filterBitmap(Map<String, List<Integer>> filterDims, Map<String, Object> data) {
         
-        Map<String, Object> data = factTable.getData();
-        @SuppressWarnings("unchecked")
-        Map<Integer, Record> records = (Map<Integer, Record>) data.get("records");
+        Map<List<Object>, RoaringBitmap> shared = BATCH_FILTERS.get();
+        List<Object> key = shared == null ? null : Filter.keyOf(filterDims);
+        RoaringBitmap ands = shared == null ? null : shared.get(key);
+        if (ands != null) {
+            return ands;
+        }
         @SuppressWarnings("unchecked")
         Map<String, RoaringBitmap> bitmapIndex = (Map<String, RoaringBitmap>) data.get("bitmapIndex"); 
-        
-        Stream<Entry<Integer, Record>> stream = parallelMode ? records.entrySet().parallelStream() 
-                : records.entrySet().stream();
-        
-        List<Predicate<Entry<Integer, Record>>> filters = new ArrayList<Predicate<Entry<Integer, Record>>>(filterDims.size());
-        
-        RoaringBitmap ands = null;
+        List<List<RoaringBitmap>> dims = new ArrayList<List<RoaringBitmap>>(filterDims.size());
+        Map<List<RoaringBitmap>, Long> estimates = new IdentityHashMap<List<RoaringBitmap>, Long>();
         for (Entry<String, List<Integer>> entry : filterDims.entrySet()) {
-            RoaringBitmap ors = new RoaringBitmap();
+            List<RoaringBitmap> ors = new ArrayList<RoaringBitmap>(entry.getValue().size());
             for (Integer v : entry.getValue()) {
                 RoaringBitmap o = bitmapIndex.get(entry.getKey() + ":" + v);
                 if (o != null) {
-                    ors.or(o);
+                    ors.add(o);
                 } else {
                     LOGGER.debug("Can not find bitmap index for " + entry.getKey() + ":" + v);
                 }
             }
+            dims.add(ors);
+            estimates.put(ors, Bitmaps.cardinality(ors));
+        }
+        if (!dims.isEmpty()) {
+            // Most selective dimension first, then AND with unions of others, they are done in parallel when timings
+            // of unions of similar size prefer it.
+            dims.sort(Comparator.comparingLong(estimates::get));
+            ands = Bitmaps.union(dims.get(0));
+            if (ands.getCardinality() > 0 && dims.size() > 1) {
+                List<List<RoaringBitmap>> others = dims.subList(1, dims.size());
+                long rows = others.stream().mapToLong(estimates::get).sum();
+                boolean parallel = parallelMode && others.size() > 1 && unionTuner.parallel(rows);
+                long enterTime = System.nanoTime();
+                List<RoaringBitmap> unions = (parallel ? others.parallelStream() : others.stream())
+                        .map(Bitmaps::union).collect(Collectors.toList());
+                if (others.size() > 1) {
+                    unionTuner.observe(rows, parallel, System.nanoTime() - enterTime);
+                }
+                for (int i = 0; i < unions.size() && ands.getCardinality() > 0; i++) {
+                    ands.and(unions.get(i));
+                }
+            }
+        }
+        boolean empty = ands != null && ands.getCardinality() == 0;
+        Condition where = Filter.whereOf(filterDims);
+        if (where != null && !empty) {
+            RoaringBitmap matched = where.evaluate(data);
             if (ands == null) {
-                ands = ors;
+                ands = matched;
             } else {
-                ands.and(ors);
+                ands.and(matched);
             }
         }
-        if (ands != null) {
-            // FIXME: Always false. 
-            if (ands.getCardinality() > Integer.MAX_VALUE) {
-                throw new UnsupportedOperationException();
-//                for (Entry<String, List<Integer>> entry : filterDims.entrySet()) {
-//                    String key = entry.getKey();
-//                    List<Integer> value = entry.getValue();
-//                    Predicate<Record> filter = a -> a.getDim(key) == DUMMY_FILTER_DIM;
-//                    for (Integer v : value) {
-//                        filter = filter.or(a -> a.getDim(key) == v);
-//                    }
-//                    filters.add(filter);
-//                 }
+        Map<String, List<Having>> measures = Filter.measuresOf(filterDims);
+        if (!measures.isEmpty() && !empty) {
+            @SuppressWarnings("unchecked")
+            Map<Integer, Record> records = (Map<Integer, Record>) data.get("records");
+            @SuppressWarnings("unchecked")
+            Map<String, BitSlicedIndex> rangeIndex = (Map<String, BitSlicedIndex>) data.get("rangeIndex");
+            for (Entry<String, List<Having>> entry : measures.entrySet()) {
+                BitSlicedIndex bsi = rangeIndex.get(entry.getKey());
+                Assert.notNull(bsi, "Can not find range index for " + entry.getKey());
+                for (Having having : entry.getValue()) {
+                    RoaringBitmap range = bsi.filter(having, records, entry.getKey());
+                    if (ands == null) {
+                        ands = range;
+                    } else {
+                        ands.and(range);
+                    }
+                }
+            }
+        }
+        if (shared != null && ands != null) {
+            shared.put(key, ands);
+        }
+        return ands;
+    }
+
+    /**
+     * Choose how to read records of filter by statistics of index, see {@link Plan.Access}.
+     * @param filterDims filter dimensions, not <code>null</code>
+     * @param data data of fact-table
+     * @return plan of filter
+     */
+    private Plan plan(Map<String, List<Integer>> filterDims, Map<String, Object> data) {
+        
+        long total = ((Map<?, ?>) data.get("records")).size();
+        Plan plan;
+        if (filterDims.isEmpty() && Filter.isPlain(filterDims)) {
+            plan = new Plan(Plan.Access.FULL_SCAN, total, total, true, null);
+        } else {
+            List<String> steps = new ArrayList<String>();
+            double selectivity = selectivity(filterDims, data, total, steps);
+            Map<List<Object>, RoaringBitmap> shared = BATCH_FILTERS.get();
+            if (Filter.isPlain(filterDims) && selectivity >= PREDICATE_SCAN_SELECTIVITY 
+                    && (shared == null || !shared.containsKey(Filter.keyOf(filterDims)))) {
+                plan = new Plan(Plan.Access.PREDICATE_SCAN, total, Math.round(total * selectivity), false, null);
             } else {
-                final RoaringBitmap m = ands;
-                LOGGER.info("Filter record IDs count {}", ands.getCardinality());
-                return stream.filter(
-                        new Predicate<Entry<Integer, Record>>() {
-                            @Override
-                            public boolean test(Entry<Integer, Record> t) {
-                                return m.contains(t.getKey());
-                            }
-                        });
+                RoaringBitmap found = filterBitmap(filterDims, data);
+                long rows = found.getCardinality();
+                plan = new Plan(rows < total * BITMAP_ITERATION_SELECTIVITY ? Plan.Access.BITMAP_ITERATION 
+                        : Plan.Access.BITMAP_FILTERED_SCAN, total, rows, true, found);
+            }
+            plan.setSteps(steps);
+        }
+        return plan;
+    }
+    
+    /**
+     * Selectivity of dimensions are multiplied, as if they are independent. Predicates on indicates and expression
+     * are not estimated.
+     * @param filterDims filter dimensions
+     * @param data data of fact-table
+     * @param total count of records
+     * @param steps statistics of every dimension, most selective first
+     * @return estimated selectivity of filter
+     */
+    private static double selectivity(Map<String, List<Integer>> filterDims, Map<String, Object> data, long total, 
+            List<String> steps) {
+        
+        @SuppressWarnings("unchecked")
+        Map<String, RoaringBitmap> bitmapIndex = (Map<String, RoaringBitmap>) data.get("bitmapIndex");
+        @SuppressWarnings("unchecked")
+        Map<String, DimRangeIndex> dimRangeIndex = (Map<String, DimRangeIndex>) data.get("dimRangeIndex");
+        Map<String, Long> rows = new HashMap<String, Long>(filterDims.size() * 2);
+        for (Entry<String, List<Integer>> entry : filterDims.entrySet()) {
+            long r = 0;
+            for (Integer v : entry.getValue()) {
+                RoaringBitmap o = bitmapIndex.get(entry.getKey() + ":" + v);
+                r += o == null ? 0 : o.getCardinality();
             }
+            rows.put(entry.getKey(), Math.min(r, total));
+        }
+        double selectivity = 1;
+        List<String> dims = new ArrayList<String>(filterDims.keySet());
+        dims.sort(Comparator.comparingLong(rows::get));
+        for (String dimName : dims) {
+            DimRangeIndex index = dimRangeIndex.get(dimName);
+            steps.add(dimName + " IN " + filterDims.get(dimName).size() + " of " 
+                    + (index == null ? "?" : index.getValueCount()) + " values ~" + rows.get(dimName) + " rows");
+            selectivity = total == 0 ? 0 : selectivity * rows.get(dimName) / total;
+        }
+        Condition where = Filter.whereOf(filterDims);
+        if (where != null) {
+            steps.add("where " + where);
+        }
+        Filter.measuresOf(filterDims).forEach((k, v) -> steps.add(k + " " + v + " by range index"));
+        return selectivity;
+    }
+    
+    private static Predicate<Entry<Integer, Record>> predicate(Map<String, List<Integer>> filterDims) {
+        
+        Predicate<Entry<Integer, Record>> and = e -> true;
+        for (Entry<String, List<Integer>> entry : filterDims.entrySet()) {
+            String dimName = entry.getKey();
+            Set<Integer> values = new HashSet<Integer>(entry.getValue());
+            and = and.and(e -> values.contains(e.getValue().getDim(dimName)));
+        }
+        return and;
+    }
+
+    /**
+     * Run query on records of filter, query is timed for choosing mode of later queries.
+     * @param filterDims filter dimensions
+     * @param query terminal operation of stream
+     * @param <R> result type
+     * @return result of query
+     */
+    private <R> R scan(Map<String, List<Integer>> filterDims, Function<Stream<Entry<Integer, Record>>, R> query) {
+        return scan(filterDims, factTable.getData(), query);
+    }
+    
+    /**
+     * @param data data of fact-table, it is same one which other parts of query use.
+     */
+    private <R> R scan(Map<String, List<Integer>> filterDims, Map<String, Object> data, 
+            Function<Stream<Entry<Integer, Record>>, R> query) {
+        
+        if (filterDims == null) {
+            filterDims = new HashMap<String, List<Integer>>(0);
         }
         
-        Predicate<Entry<Integer, Record>> andFilter = i -> i.getKey() != DUMMY_FILTER_DIM;
-        for (Predicate<Entry<Integer, Record>> filter : filters) {
-            andFilter = andFilter.and(filter);
+        Plan plan = plan(filterDims, data);
+        ParallelTuner tuner = tuners.get(plan.getAccess());
+        plan.setParallel(parallelMode && tuner.parallel(plan.scannedRows()));
+        LOGGER.info("Filter by {}", plan);
+        
+        long enterTime = System.nanoTime();
+        R result = query.apply(filter(filterDims, plan, data));
+        tuner.observe(plan.scannedRows(), plan.isParallel(), System.nanoTime() - enterTime);
+        return result;
+    }
+    
+    private Stream<Entry<Integer, Record>> filter(Map<String, List<Integer>> filterDims, Plan plan, 
+            Map<String, Object> data) {
+        
+        @SuppressWarnings("unchecked")
+        Map<Integer, Record> records = (Map<Integer, Record>) data.get("records");
+        if (plan.getAccess() == Plan.Access.BITMAP_ITERATION) {
+            IntStream ids = Arrays.stream(plan.found().toArray());
+            return (plan.isParallel() ? ids.parallel() : ids).mapToObj(
+                    id -> new SimpleImmutableEntry<Integer, Record>(id, records.get(id)));
         }
+        Stream<Entry<Integer, Record>> stream = plan.isParallel() ? records.entrySet().parallelStream() 
+                : records.entrySet().stream();
+        switch (plan.getAccess()) {
+        case PREDICATE_SCAN:
+            return stream.filter(predicate(filterDims));
+        case BITMAP_FILTERED_SCAN:
+            RoaringBitmap found = plan.found();
+            return stream.filter(e -> found.contains(e.getKey()));
+        default:
+            return stream;
+        }
+    }
+    
+    /**
+     * Plan of reading records of given filter, and aggregations which are answered by index only.
+     * @param filterDims filter dimensions
+     * @return plan with estimated rows
+     * @since 0.3
+     */
+    public Plan explain(Map<String, List<Integer>> filterDims) {
         
-        return stream.filter(andFilter);
+        Map<String, Object> data = factTable.getData();
+        Plan plan = plan(filterDims == null ? new HashMap<String, List<Integer>>(0) : filterDims, data);
+        ParallelTuner tuner = tuners.get(plan.getAccess());
+        plan.setParallel(parallelMode && tuner.prefer(plan.scannedRows()));
+        plan.setParallelRows(parallelMode ? tuner.threshold() : Long.MAX_VALUE);
+        List<String> indexOnly = plan.getIndexOnly();
+        indexOnly.add("count");
+        @SuppressWarnings("unchecked")
+        Map<String, BitSlicedIndex> rangeIndex = (Map<String, BitSlicedIndex>) data.get("rangeIndex");
+        rangeIndex.forEach((k, v) -> {
+            if (v.isIntegral()) {
+                indexOnly.add("sum(" + k + ")");
+            }
+        });
+        @SuppressWarnings("unchecked")
+        Map<String, DimRangeIndex> dimRangeIndex = (Map<String, DimRangeIndex>) data.get("dimRangeIndex");
+        dimRangeIndex.forEach((k, v) -> {
+            if (v.getValueCount() <= INDEX_ONLY_GROUPS) {
+                indexOnly.add("count group by " + k);
+            }
+        });
+        LOGGER.info("Explain filter {} is {} by {}", filterDims, plan, tuner);
+        return plan;
     }
 
     /**
@@ -166,6 +442,8 @@ public class MiniCube implements Aggregations {
     /**
      * Sum calculation of given indicate with filter. It equal to "SELECT SUM({indName}) FROM {fact table of cube} WHERE 
      * {dimension1 IN (a, b, c)} AND {dimension2 IN (d, e, f)}".
+     * 
+     * <p>Indicate of integer values is summed by its {@link BitSlicedIndex} without touching records.
      * @param indName indicate name for sum
      * @param filterDims filter dimensions
      * @return result that formated using {@value #IND_SCALE}
@@ -175,16 +453,24 @@ public class MiniCube implements Aggregations {
         
         long enterTime = System.currentTimeMillis();
         
-        Stream<Entry<Integer, Record>> stream = filter(filterDims);
-        LOGGER.debug("Prepare predicate using {} ms.", System.currentTimeMillis() - enterTime);
+        Map<String, Object> data = factTable.getData();
+        @SuppressWarnings("unchecked")
+        BitSlicedIndex bsi = ((Map<String, BitSlicedIndex>) data.get("rangeIndex")).get(indName);
+        if (bsi != null && bsi.isIntegral()) {
+            BigDecimal sum = bsi.sum(filterBitmap(filterDims == null ? new HashMap<String, List<Integer>>(0) 
+                    : filterDims, data));
+            LOGGER.info("Sum {} filter {} result {} by slices using {} ms.", indName, filterDims, sum, 
+                    System.currentTimeMillis() - enterTime);
+            return sum;
+        }
         
-        DoubleDouble sum = stream.map(
+        DoubleDouble sum = scan(filterDims, stream -> stream.map(
             new Function<Entry<Integer, Record>, DoubleDouble>() {
                 @Override
                 public DoubleDouble apply(Entry<Integer, Record> t) {
                     return t.getValue().getInd(indName);
                 }
-            }).reduce(new DoubleDouble(), (x, y) -> x.add(y));
+            }).reduce(new DoubleDouble(), (x, y) -> x.add(y)));
         
         enterTime = System.currentTimeMillis() - enterTime;
         LOGGER.info("Sum {} filter {} result {} using {} ms.", indName, filterDims, sum, enterTime);
@@ -196,16 +482,16 @@ public class MiniCube implements Aggregations {
     public Map<Integer, BigDecimal> sum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims) {
         
         long enterTime = System.currentTimeMillis();
-        Stream<Entry<Integer, Record>> stream = filter(filterDims);
         
         Map<Integer, BigDecimal> group = new HashMap<Integer, BigDecimal>();
-        stream.collect(Collectors.groupingBy(p->p.getValue().getDim(groupByDimName), Collectors.reducing(new DoubleDouble(), 
+        scan(filterDims, stream -> stream.collect(Collectors.groupingBy(p->p.getValue().getDim(groupByDimName), 
+                Collectors.reducing(new DoubleDouble(), 
                 new Function<Entry<Integer, Record>, DoubleDouble>() {
                     @Override
                     public DoubleDouble apply(Entry<Integer, Record> t) {
                         return t.getValue().getInd(indName);
                     }
-                }, (x, y) -> x.add(y))))
+                }, (x, y) -> x.add(y)))))
             .forEach((k, v) -> group.put(k, new BigDecimal(v.toSciNotation()).setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP)));
         
         enterTime = System.currentTimeMillis() - enterTime;
@@ -216,6 +502,279 @@ public class MiniCube implements Aggregations {
         return group;
     }
     
+    @Override
+    public Map<Integer, BigDecimal> sum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims,
+            Having having) {
+        
+        Map<Integer, BigDecimal> group = sum(indName, groupByDimName, filterDims);
+        return having == null ? group : having.filter(group);
+    }
+    
+    @Override
+    public Map<Integer, BigDecimal> topSum(String indName, String groupByDimName, Map<String, List<Integer>> filterDims,
+            int limit) {
+        
+        return top(sum(indName, groupByDimName, filterDims), limit);
+    }
+    
+    /**
+     * @param group result of group-by sum
+     * @param limit N of top-N
+     * @param <K> group key type
+     * @return top-N entries of group in descending order, ties are in ascending order of key
+     * @since 0.3
+     */
+    public static <K extends Comparable<K>> Map<K, BigDecimal> top(Map<K, BigDecimal> group, int limit) {
+        
+        Assert.isTrue(limit > 0, "Limit must greater than 0.");
+        Map<K, BigDecimal> result = new LinkedHashMap<K, BigDecimal>();
+        group.entrySet().stream().sorted((x, y) -> {
+            int c = y.getValue().compareTo(x.getValue());
+            return c != 0 ? c : x.getKey().compareTo(y.getKey());
+        }).limit(limit).forEachOrdered(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+    
+    @Override
+    public Map<GroupKey, BigDecimal> sum(String indName, List<String> groupByDimNames, 
+            Map<String, List<Integer>> filterDims) {
+        
+        long enterTime = System.currentTimeMillis();
+        
+        Map<String, Object> data = factTable.getData();
+        GroupCoder coder = new GroupCoder(groupByDimNames.toArray(new String[0]), data);
+        Map<GroupKey, BigDecimal> group = new HashMap<GroupKey, BigDecimal>();
+        scan(filterDims, data, stream -> stream.collect(Collectors.groupingBy(p -> coder.encode(p.getValue()), 
+                Collectors.reducing(new DoubleDouble(), 
+                new Function<Entry<Integer, Record>, DoubleDouble>() {
+                    @Override
+                    public DoubleDouble apply(Entry<Integer, Record> t) {
+                        return t.getValue().getInd(indName);
+                    }
+                }, (x, y) -> x.add(y)))))
+            .forEach((k, v) -> group.put(coder.decode(k), new BigDecimal(v.toSciNotation()).setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP)));
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} sum {} filter {} result size {} using {} ms.", groupByDimNames, indName, 
+                filterDims, group.size(), enterTime);
+        return group;
+    }
+    
+    @Override
+    public List<Map<GroupKey, BigDecimal>> sumGroupingSets(String indName, List<List<String>> groupingSets, 
+            Map<String, List<Integer>> filterDims) {
+        
+        Assert.notEmpty(groupingSets, "Grouping sets can not empty.");
+        long enterTime = System.currentTimeMillis();
+        
+        Map<String, Object> data = factTable.getData();
+        final GroupCoder[] sets = new GroupCoder[groupingSets.size()];
+        for (int i = 0; i < sets.length; i++) {
+            sets[i] = new GroupCoder(groupingSets.get(i).toArray(new String[0]), data);
+        }
+        // Every record is accumulated into all of sets, so scanning once.
+        List<Map<Object, DoubleDouble>> groups = scan(filterDims, data, stream -> stream.collect(Collector.of(
+            () -> {
+                List<Map<Object, DoubleDouble>> x = new ArrayList<Map<Object, DoubleDouble>>(sets.length);
+                for (int i = 0; i < sets.length; i++) {
+                    x.add(new HashMap<Object, DoubleDouble>());
+                }
+                return x;
+            }, 
+            (x, y) -> {
+                DoubleDouble ind = y.getValue().getInd(indName);
+                for (int i = 0; i < sets.length; i++) {
+                    x.get(i).merge(sets[i].encode(y.getValue()), ind, DoubleDouble::add);
+                }
+            }, 
+            (x, y) -> {
+                for (int i = 0; i < sets.length; i++) {
+                    Map<Object, DoubleDouble> m = x.get(i);
+                    y.get(i).forEach((k, v) -> m.merge(k, v, DoubleDouble::add));
+                }
+                return x;
+            })));
+        
+        List<Map<GroupKey, BigDecimal>> result = new ArrayList<Map<GroupKey, BigDecimal>>(sets.length);
+        for (int i = 0; i < sets.length; i++) {
+            GroupCoder coder = sets[i];
+            Map<GroupKey, BigDecimal> group = new HashMap<GroupKey, BigDecimal>();
+            groups.get(i).forEach((k, v) -> group.put(coder.decode(k), new BigDecimal(v.toSciNotation()).setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP)));
+            result.add(group);
+        }
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Grouping sets {} sum {} filter {} using {} ms.", groupingSets, indName, filterDims, enterTime);
+        return result;
+    }
+    
+    /**
+     * Accumulate all of given indicates of record into one array, so scanning once.
+     */
+    private Collector<Entry<Integer, Record>, DoubleDouble[], DoubleDouble[]> sums(List<String> indNames) {
+        
+        Assert.notEmpty(indNames, "Indicate names can not empty.");
+        final String[] names = indNames.toArray(new String[0]);
+        return Collector.of(
+            () -> {
+                DoubleDouble[] sum = new DoubleDouble[names.length];
+                Arrays.fill(sum, new DoubleDouble());
+                return sum;
+            }, 
+            (x, y) -> {
+                for (int i = 0; i < names.length; i++) {
+                    x[i] = x[i].add(y.getValue().getInd(names[i]));
+                }
+            }, 
+            (x, y) -> {
+                for (int i = 0; i < names.length; i++) {
+                    x[i] = x[i].add(y[i]);
+                }
+                return x;
+            });
+    }
+    
+    @Override
+    public Map<String, BigDecimal> sum(List<String> indNames, Map<String, List<Integer>> filterDims) {
+        
+        long enterTime = System.currentTimeMillis();
+        
+        DoubleDouble[] sum = scan(filterDims, stream -> stream.collect(sums(indNames)));
+        
+        Map<String, BigDecimal> result = new LinkedHashMap<String, BigDecimal>();
+        for (int i = 0; i < sum.length; i++) {
+            result.put(indNames.get(i), new BigDecimal(sum[i].toSciNotation()).setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP));
+        }
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Sum {} filter {} result {} using {} ms.", indNames, filterDims, result, enterTime);
+        return result;
+    }
+    
+    @Override
+    public Map<String, Map<Integer, BigDecimal>> sum(List<String> indNames, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
+        
+        long enterTime = System.currentTimeMillis();
+        
+        Map<String, Map<Integer, BigDecimal>> result = new LinkedHashMap<String, Map<Integer, BigDecimal>>();
+        indNames.forEach(e -> result.put(e, new HashMap<Integer, BigDecimal>()));
+        scan(filterDims, stream -> stream.collect(Collectors.groupingBy(p -> p.getValue().getDim(groupByDimName), 
+                sums(indNames))))
+            .forEach((k, v) -> {
+                for (int i = 0; i < v.length; i++) {
+                    result.get(indNames.get(i)).put(k, new BigDecimal(v[i].toSciNotation()).setScale(IND_SCALE, 
+                            BigDecimal.ROUND_HALF_UP));
+                }
+            });
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} sum {} filter {} result size {} using {} ms.", groupByDimName, indNames, 
+                filterDims, result.get(indNames.get(0)).size(), enterTime);
+        return result;
+    }
+    
+    /**
+     * Accumulate partial states of record, see {@link Measure#states(List)}.
+     */
+    private Collector<Entry<Integer, Record>, DoubleDouble[], DoubleDouble[]> states(List<String> states) {
+        
+        final Measure.Op[] ops = states.stream().map(Measure::opOf).toArray(Measure.Op[]::new);
+        final String[] names = states.stream().map(Measure::indNameOf).toArray(String[]::new);
+        final DoubleDouble one = new DoubleDouble(1);
+        return Collector.of(
+            () -> {
+                DoubleDouble[] x = new DoubleDouble[ops.length];
+                for (int i = 0; i < ops.length; i++) {
+                    x[i] = ops[i] == Measure.Op.SUM || ops[i] == Measure.Op.COUNT ? new DoubleDouble() : null;
+                }
+                return x;
+            }, 
+            (x, y) -> {
+                for (int i = 0; i < ops.length; i++) {
+                    DoubleDouble v = ops[i] == Measure.Op.COUNT ? one : y.getValue().getInd(names[i]);
+                    x[i] = accumulate(ops[i], x[i], v);
+                }
+            }, 
+            (x, y) -> {
+                for (int i = 0; i < ops.length; i++) {
+                    x[i] = y[i] == null ? x[i] : accumulate(ops[i], x[i], y[i]);
+                }
+                return x;
+            });
+    }
+    
+    private static DoubleDouble accumulate(Measure.Op op, DoubleDouble x, DoubleDouble v) {
+        
+        switch (op) {
+        case MIN:
+            return x == null || v.lt(x) ? v : x;
+        case MAX:
+            return x == null || v.gt(x) ? v : x;
+        default:
+            return x.add(v);
+        }
+    }
+    
+    private static BigDecimal[] toDecimals(List<String> states, DoubleDouble[] values) {
+        
+        BigDecimal[] result = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] == null ? null : new BigDecimal(values[i].toSciNotation()).setScale(
+                    Measure.opOf(states.get(i)) == Measure.Op.COUNT ? 0 : IND_SCALE, BigDecimal.ROUND_HALF_UP);
+        }
+        return result;
+    }
+    
+    /**
+     * Partial states of given group in one scan, they can be merged by {@link Measure#merge(List, BigDecimal[], BigDecimal[])}.
+     * @param states partial states, see {@link Measure#states(List)}
+     * @param groupByDimName group by dimensions, <code>null</code> means all of records are in group <code>0</code>
+     * @param filterDims filter dimensions
+     * @return values of states of every group
+     * @since 0.3
+     */
+    public Map<Integer, BigDecimal[]> states(List<String> states, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        
+        long enterTime = System.currentTimeMillis();
+        
+        Map<Integer, BigDecimal[]> group = new HashMap<Integer, BigDecimal[]>();
+        if (groupByDimName == null) {
+            DoubleDouble[] values = scan(filterDims, stream -> stream.collect(states(states)));
+            // Min and max are null when nothing is accumulated.
+            group.put(0, toDecimals(states, values));
+        } else {
+            scan(filterDims, stream -> stream.collect(Collectors.groupingBy(p -> p.getValue().getDim(groupByDimName), 
+                    states(states))))
+                .forEach((k, v) -> group.put(k, toDecimals(states, v)));
+        }
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} states {} filter {} result size {} using {} ms.", groupByDimName, states, 
+                filterDims, group.size(), enterTime);
+        return group;
+    }
+    
+    @Override
+    public List<BigDecimal> measures(List<Measure> measures, Map<String, List<Integer>> filterDims) {
+        
+        List<String> states = Measure.states(measures);
+        BigDecimal[] values = states(states, null, filterDims).get(0);
+        return measures.stream().map(e -> e.evaluate(states, values)).collect(Collectors.toList());
+    }
+    
+    @Override
+    public Map<Integer, List<BigDecimal>> measures(List<Measure> measures, String groupByDimName,
+            Map<String, List<Integer>> filterDims) {
+        
+        List<String> states = Measure.states(measures);
+        Map<Integer, List<BigDecimal>> result = new HashMap<Integer, List<BigDecimal>>();
+        states(states, groupByDimName, filterDims).forEach((k, v) -> result.put(k, 
+                measures.stream().map(e -> e.evaluate(states, v)).collect(Collectors.toList())));
+        return result;
+    }
+    
     @Override
     public long count(String indName) {
         
@@ -223,16 +782,19 @@ public class MiniCube implements Aggregations {
         return count(indName, null);
     }
 
+    /**
+     * Count is cardinality of filter bitmap, records are not touched.
+     */
     @Override
     public long count(String indName,
             Map<String, List<Integer>> filterDims) {
         
         long enterTime = System.currentTimeMillis();
         
-        Stream<Entry<Integer, Record>> stream = filter(filterDims);
-        LOGGER.debug("Prepare predicate using {} ms.", System.currentTimeMillis() - enterTime);
-        
-        Long count = stream.count();
+        Map<String, Object> data = factTable.getData();
+        RoaringBitmap ands = filterBitmap(filterDims == null ? new HashMap<String, List<Integer>>(0) : filterDims, 
+                data);
+        long count = ands == null ? ((Map<?, ?>) data.get("records")).size() : ands.getCardinality();
         
         enterTime = System.currentTimeMillis() - enterTime;
         LOGGER.info("Count {} filter {} result {} using {} ms.", indName, filterDims, count, enterTime);
@@ -240,15 +802,34 @@ public class MiniCube implements Aggregations {
         return count;
     }
 
+    /**
+     * Count of group is <code>cardinality(filter AND bitmap of group value)</code> when group-by dimension has at most
+     * {@value #INDEX_ONLY_GROUPS} values, otherwise records are scanned.
+     */
     @Override
     public Map<Integer, Long> count(String indName,
             String groupByDimName, Map<String, List<Integer>> filterDims) {
         
         long enterTime = System.currentTimeMillis();
-        Stream<Entry<Integer, Record>> stream = filter(filterDims);
         
-        Map<Integer, Long> group = stream.collect(Collectors.groupingBy(p->p.getValue().getDim(groupByDimName), 
-                Collectors.counting()));
+        Map<String, Object> data = factTable.getData();
+        Map<Integer, RoaringBitmap> values = groupBitmaps(groupByDimName, data);
+        Map<Integer, Long> group;
+        if (values != null) {
+            RoaringBitmap ands = filterBitmap(filterDims == null ? new HashMap<String, List<Integer>>(0) 
+                    : filterDims, data);
+            group = new HashMap<Integer, Long>(values.size() * 2);
+            for (Entry<Integer, RoaringBitmap> e : values.entrySet()) {
+                long count = ands == null ? e.getValue().getCardinality() 
+                        : RoaringBitmap.and(ands, e.getValue()).getCardinality();
+                if (count > 0) {
+                    group.put(e.getKey(), count);
+                }
+            }
+        } else {
+            group = scan(filterDims, stream -> stream.collect(Collectors.groupingBy(
+                    p->p.getValue().getDim(groupByDimName), Collectors.counting())));
+        }
         
         enterTime = System.currentTimeMillis() - enterTime;
         LOGGER.debug("Group by {} count {} filter {} result {} using {} ms.", groupByDimName, indName, 
@@ -259,29 +840,72 @@ public class MiniCube implements Aggregations {
     }
 
     @Override
-    public String toString() {
-        return "MiniCube [factTable=" + factTable + "]";
+    public Map<Integer, Long> count(String indName, String groupByDimName, Map<String, List<Integer>> filterDims,
+            Having having) {
+        
+        Map<Integer, Long> group = count(indName, groupByDimName, filterDims);
+        return having == null ? group : having.filter(group);
     }
     
-    private RoaringBitmap buildBitMap(Set<Integer> set) {
+    @Override
+    public Map<GroupKey, Long> count(String indName, List<String> groupByDimNames, 
+            Map<String, List<Integer>> filterDims) {
         
-        RoaringBitmap result = new RoaringBitmap();
-        set.stream().forEach(x -> result.add(x));
-        return result;
+        long enterTime = System.currentTimeMillis();
+        
+        Map<String, Object> data = factTable.getData();
+        GroupCoder coder = new GroupCoder(groupByDimNames.toArray(new String[0]), data);
+        Map<GroupKey, Long> group = new HashMap<GroupKey, Long>();
+        scan(filterDims, data, stream -> stream.collect(Collectors.groupingBy(p -> coder.encode(p.getValue()), 
+                Collectors.counting()))).forEach((k, v) -> group.put(coder.decode(k), v));
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} count {} filter {} result size {} using {} ms.", groupByDimNames, indName, 
+                filterDims, group.size(), enterTime);
+        return group;
     }
 
+    /**
+     * @param dimName dimension name
+     * @param data data of fact-table
+     * @return bitmaps of dimension values which are shared with index and must not be changed, <code>null</code> when 
+     *  more than {@value #INDEX_ONLY_GROUPS} values.
+     */
+    private Map<Integer, RoaringBitmap> groupBitmaps(String dimName, Map<String, Object> data) {
+        
+        // Unknown dimension fails as scanning does
+        factTable.getDimIndex(dimName);
+        @SuppressWarnings("unchecked")
+        Map<Integer, RoaringBitmap> values = ((Map<String, Map<Integer, RoaringBitmap>>) data.get("dimBitmaps"))
+                .getOrDefault(dimName, Collections.<Integer, RoaringBitmap>emptyMap());
+        return values.size() > INDEX_ONLY_GROUPS ? null : values;
+    }
+    
+    @Override
+    public String toString() {
+        return "MiniCube [factTable=" + factTable + "]";
+    }
+    
+    /**
+     * Distinct values of dimension are found by intersecting bitmaps of group values and distinct values when there 
+     * are at most {@value #INDEX_ONLY_GROUPS} pairs of them, otherwise values are added into bitmap of group directly 
+     * and bitmaps of threads are OR-ed.
+     */
     @Override
     public Map<Integer, RoaringBitmap> distinct(String distinctName, boolean isDim,
             String groupByDimName, Map<String, List<Integer>> filterDims) {
         
         long enterTime = System.currentTimeMillis();
-        Stream<Entry<Integer, Record>> stream = filter(filterDims);
-        Map<Integer, RoaringBitmap> group = new HashMap<Integer, RoaringBitmap>();
-        // FIXME: indicator's distinct???
-        stream.collect(Collectors.groupingBy(p->p.getValue().getDim(groupByDimName), 
-                Collectors.mapping(isDim ? p->p.getValue().getDim(distinctName) 
-                        : p->p.getValue().getInd(distinctName).intValue(), Collectors.toSet())))
-              .forEach((k, v) -> group.put(k, buildBitMap(v)));
+        Map<Integer, RoaringBitmap> group = isDim ? distinctByIndex(distinctName, groupByDimName, filterDims) : null;
+        if (group == null) {
+            // FIXME: indicator's distinct???
+            ToIntFunction<Record> value = isDim ? r -> r.getDim(distinctName) : r -> r.getInd(distinctName).intValue();
+            group = accumulate(groupByDimName, filterDims, RoaringBitmap::new, (a, r) -> a.add(value.applyAsInt(r)), 
+                    (a, b) -> {
+                        a.or(b);
+                        return a;
+                    });
+        }
         enterTime = System.currentTimeMillis() - enterTime;
         LOGGER.debug("Group by {} distinct {} filter {} result {} using {} ms.", groupByDimName, distinctName, 
                 filterDims, group, enterTime);
@@ -290,6 +914,58 @@ public class MiniCube implements Aggregations {
         return group;
     }
 
+    /**
+     * Accumulate records into container of group, every thread of stream has its own containers and they are merged 
+     * at last, so containers are not shared between threads.
+     * @param groupByDimName group by dimension, all records are in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @param supplier create container of group
+     * @param accumulator add record into container
+     * @param combiner merge second container into first one and return it
+     * @param <A> container type
+     * @return container of every group
+     */
+    private <A> Map<Integer, A> accumulate(String groupByDimName, Map<String, List<Integer>> filterDims, 
+            Supplier<A> supplier, BiConsumer<A, Record> accumulator, BinaryOperator<A> combiner) {
+        
+        return scan(filterDims, stream -> stream.collect(Collector.of(
+                HashMap<Integer, A>::new, 
+                (m, e) -> accumulator.accept(m.computeIfAbsent(groupByDimName == null ? 0 
+                        : e.getValue().getDim(groupByDimName), k -> supplier.get()), e.getValue()), 
+                (x, y) -> {
+                    y.forEach((k, v) -> x.merge(k, v, combiner));
+                    return x;
+                })));
+    }
+
+    private Map<Integer, RoaringBitmap> distinctByIndex(String distinctName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        
+        Map<String, Object> data = factTable.getData();
+        Map<Integer, RoaringBitmap> groups = groupBitmaps(groupByDimName, data);
+        Map<Integer, RoaringBitmap> values = groupBitmaps(distinctName, data);
+        if (groups == null || values == null || (long) groups.size() * values.size() > INDEX_ONLY_GROUPS) {
+            return null;
+        }
+        RoaringBitmap ands = filterBitmap(filterDims == null ? new HashMap<String, List<Integer>>(0) : filterDims, 
+                data);
+        Map<Integer, RoaringBitmap> group = new HashMap<Integer, RoaringBitmap>();
+        for (Entry<Integer, RoaringBitmap> g : groups.entrySet()) {
+            RoaringBitmap found = ands == null ? g.getValue() : RoaringBitmap.and(ands, g.getValue());
+            if (found.getCardinality() == 0) {
+                continue;
+            }
+            RoaringBitmap distinct = new RoaringBitmap();
+            for (Entry<Integer, RoaringBitmap> v : values.entrySet()) {
+                if (RoaringBitmap.and(found, v.getValue()).getCardinality() > 0) {
+                    distinct.add(v.getKey());
+                }
+            }
+            group.put(g.getKey(), distinct);
+        }
+        return group;
+    }
+
     @Override
     public Map<Integer, Integer> discnt(String distinctName, boolean isDim, String groupByDimName,
             Map<String, List<Integer>> filterDims) {
@@ -304,4 +980,163 @@ public class MiniCube implements Aggregations {
         return result;
     }
     
+    @Override
+    public Map<Integer, HyperLogLog> sketch(String distinctName, boolean isDim, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, int precision) {
+        
+        long enterTime = System.currentTimeMillis();
+        Map<Integer, HyperLogLog> group = new HashMap<Integer, HyperLogLog>();
+        Map<Integer, RoaringBitmap> distinct = isDim ? distinctByIndex(distinctName, groupByDimName, filterDims) : null;
+        if (distinct != null) {
+            distinct.forEach((k, v) -> {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                for (IntIterator it = v.getIntIterator(); it.hasNext();) {
+                    sketch.add(it.next());
+                }
+                group.put(k, sketch);
+            });
+        } else {
+            ToIntFunction<Record> value = isDim ? r -> r.getDim(distinctName) : r -> r.getInd(distinctName).intValue();
+            group.putAll(accumulate(groupByDimName, filterDims, () -> new HyperLogLog(precision), 
+                    (a, r) -> a.add(value.applyAsInt(r)), HyperLogLog::merge));
+        }
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} sketch {} filter {} result size {} using {} ms.", groupByDimName, distinctName, 
+                filterDims, group.size(), enterTime);
+        return group;
+    }
+    
+    @Override
+    public Map<Integer, Integer> discnt(String distinctName, boolean isDim, String groupByDimName,
+            Map<String, List<Integer>> filterDims, int precision) {
+        
+        Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+        sketch(distinctName, isDim, groupByDimName, filterDims, precision).forEach(
+                (k, v) -> result.put(k, (int) v.cardinality()));
+        return result;
+    }
+    
+    @Override
+    public Map<Integer, TDigest> digest(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        
+        long enterTime = System.currentTimeMillis();
+        Map<Integer, TDigest> group = accumulate(groupByDimName, filterDims, TDigest::new, 
+                (a, r) -> a.add(r.getInd(indName).doubleValue()), TDigest::merge);
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} digest {} filter {} result size {} using {} ms.", groupByDimName, indName, 
+                filterDims, group.size(), enterTime);
+        return group;
+    }
+    
+    @Override
+    public Map<Integer, List<BigDecimal>> quantiles(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, double[] quantiles) {
+        
+        return quantiles(digest(indName, groupByDimName, filterDims), quantiles);
+    }
+    
+    /**
+     * @param digests digest of every group
+     * @param quantiles quantiles between 0 and 1
+     * @return values of quantiles of every group that formated using {@value #IND_SCALE}
+     * @since 0.3
+     */
+    public static Map<Integer, List<BigDecimal>> quantiles(Map<Integer, TDigest> digests, double[] quantiles) {
+        
+        Map<Integer, List<BigDecimal>> result = new HashMap<Integer, List<BigDecimal>>();
+        digests.forEach((k, v) -> result.put(k, Arrays.stream(quantiles).mapToObj(q -> new BigDecimal(v.quantile(q))
+                .setScale(IND_SCALE, BigDecimal.ROUND_HALF_UP)).collect(Collectors.toList())));
+        return result;
+    }
+    
+    @Override
+    public Map<Integer, long[]> histogram(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims, double[] edges) {
+        
+        for (int i = 1; i < edges.length; i++) {
+            Assert.isTrue(edges[i - 1] < edges[i], "Edges of bins must be increasing.");
+        }
+        long enterTime = System.currentTimeMillis();
+        Map<Integer, long[]> group = accumulate(groupByDimName, filterDims, () -> new long[edges.length + 1], 
+                (a, r) -> {
+                    int i = Arrays.binarySearch(edges, r.getInd(indName).doubleValue());
+                    // Value equal to edge is in bin after it.
+                    a[i >= 0 ? i + 1 : -i - 1]++;
+                }, MiniCube::add);
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} histogram {} filter {} result size {} using {} ms.", groupByDimName, indName, 
+                filterDims, group.size(), enterTime);
+        return group;
+    }
+    
+    /**
+     * @param x add into
+     * @param y add from
+     * @return x
+     * @since 0.3
+     */
+    public static long[] add(long[] x, long[] y) {
+        
+        for (int i = 0; i < x.length; i++) {
+            x[i] += y[i];
+        }
+        return x;
+    }
+    
+    @Override
+    public Map<Integer, Estimate> estimateSum(String indName, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        
+        factTable.getIndIndex(indName);
+        return estimate(r -> r.getInd(indName).doubleValue(), groupByDimName, filterDims);
+    }
+    
+    @Override
+    public Map<Integer, Estimate> estimateCount(String groupByDimName, Map<String, List<Integer>> filterDims) {
+        return estimate(r -> 1, groupByDimName, filterDims);
+    }
+    
+    /**
+     * Scan sampled records which match filter, sample is small so it is done in one thread.
+     * @param value value of record
+     * @param groupByDimName group by dimension, all records are in group <code>0</code> when <code>null</code>
+     * @param filterDims filter dimensions
+     * @return estimate of every group
+     */
+    private Map<Integer, Estimate> estimate(ToDoubleFunction<Record> value, String groupByDimName, 
+            Map<String, List<Integer>> filterDims) {
+        
+        long enterTime = System.currentTimeMillis();
+        Map<String, Object> data = factTable.getData();
+        @SuppressWarnings("unchecked")
+        Map<Integer, Record> records = (Map<Integer, Record>) data.get("records");
+        RoaringBitmap sample = (RoaringBitmap) data.get("sample");
+        double rate = (Double) data.get("sampleRate");
+        RoaringBitmap ands = filterBitmap(filterDims == null ? new HashMap<String, List<Integer>>(0) : filterDims, 
+                data);
+        RoaringBitmap found = ands == null ? sample : RoaringBitmap.and(ands, sample);
+        
+        // Sum, sum of squares and count of sampled records
+        Map<Integer, double[]> sums = new HashMap<Integer, double[]>();
+        for (IntIterator it = found.getIntIterator(); it.hasNext();) {
+            Record r = records.get(it.next());
+            double[] s = sums.computeIfAbsent(groupByDimName == null ? 0 : r.getDim(groupByDimName), 
+                    k -> new double[3]);
+            double x = value.applyAsDouble(r);
+            s[0] += x;
+            s[1] += x * x;
+            s[2]++;
+        }
+        Map<Integer, Estimate> group = new HashMap<Integer, Estimate>(sums.size() * 2);
+        sums.forEach((k, s) -> group.put(k, Estimate.of(s[0], s[1], (long) s[2], rate)));
+        
+        enterTime = System.currentTimeMillis() - enterTime;
+        LOGGER.info("Group by {} estimate filter {} of {} sampled records result size {} using {} ms.", 
+                groupByDimName, filterDims, found.getCardinality(), group.size(), enterTime);
+        return group;
+    }
+    
 }
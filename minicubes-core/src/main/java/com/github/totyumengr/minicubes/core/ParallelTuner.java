@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+/**
+ * Choose sequential or parallel stream of every query by observed timings of scans of this cube, so small queries
+ * do not pay fork/join overhead and big scans use all cores.
+ *
+ * <p>Scans are bucketed by <code>log2(rows)</code>, every bucket keeps moving average of nanoseconds per row of both
+ * modes and cheaper one is chosen. Bucket which has not been timed in both modes follows <code>bootstrapRows</code>,
+ * and one of every {@value #EXPLORE_EVERY} scans of bucket runs in the other mode, so averages follow changes of
+ * data and JIT.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+final class ParallelTuner {
+
+    /**
+     * Scans of less rows are always sequential and not timed.
+     */
+    static final long SEQUENTIAL_MAX_ROWS = 1 << 10;
+    static final int EXPLORE_EVERY = 32;
+    /**
+     * Weight of latest timing in moving average.
+     */
+    private static final double ALPHA = 0.25;
+    private static final int BUCKETS = 64;
+
+    private final long bootstrapRows;
+    /**
+     * Nanoseconds per row of sequential and parallel scans, <code>0</code> when not timed yet.
+     */
+    private final double[][] costs = new double[2][BUCKETS];
+    private final long[] scans = new long[BUCKETS];
+
+    ParallelTuner(long bootstrapRows) {
+        super();
+        this.bootstrapRows = bootstrapRows;
+    }
+
+    private static int bucket(long rows) {
+        return 63 - Long.numberOfLeadingZeros(rows);
+    }
+
+    /**
+     * @param rows rows which are read by scan
+     * @return <code>true</code> when scan should be parallel, it is counted as a scan of bucket for exploring.
+     */
+    synchronized boolean parallel(long rows) {
+
+        if (rows < SEQUENTIAL_MAX_ROWS) {
+            return false;
+        }
+        int b = bucket(rows);
+        boolean parallel = preferParallel(b, rows);
+        return scans[b]++ % EXPLORE_EVERY == EXPLORE_EVERY - 1 ? !parallel : parallel;
+    }
+
+    /**
+     * @param rows rows which are read by scan
+     * @return <code>true</code> when parallel is cheaper by timings so far, it is not counted as a scan.
+     */
+    synchronized boolean prefer(long rows) {
+        return rows >= SEQUENTIAL_MAX_ROWS && preferParallel(bucket(rows), rows);
+    }
+
+    private boolean preferParallel(int b, long rows) {
+
+        double sequential = costs[0][b];
+        double parallel = costs[1][b];
+        return sequential == 0 || parallel == 0 ? rows >= bootstrapRows : parallel < sequential;
+    }
+
+    /**
+     * @param rows rows which are read by scan
+     * @param parallel mode of scan
+     * @param nanos elapsed time of scan
+     */
+    synchronized void observe(long rows, boolean parallel, long nanos) {
+
+        if (rows < SEQUENTIAL_MAX_ROWS) {
+            return;
+        }
+        double[] cost = costs[parallel ? 1 : 0];
+        int b = bucket(rows);
+        double c = (double) nanos / rows;
+        cost[b] = cost[b] == 0 ? c : cost[b] + ALPHA * (c - cost[b]);
+    }
+
+    /**
+     * @return least rows from which parallel is preferred by timings so far
+     */
+    synchronized long threshold() {
+
+        for (int b = bucket(SEQUENTIAL_MAX_ROWS); b < BUCKETS - 1; b++) {
+            long rows = Math.max(1L << b, Math.min(bootstrapRows, (1L << (b + 1)) - 1));
+            if (preferParallel(b, rows)) {
+                return costs[0][b] == 0 || costs[1][b] == 0 ? rows : 1L << b;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        StringBuilder s = new StringBuilder("ParallelTuner [threshold=").append(threshold()).append(", ns/row=");
+        for (int b = 0; b < BUCKETS; b++) {
+            if (costs[0][b] != 0 || costs[1][b] != 0) {
+                s.append(" 2^").append(b).append(":").append(Math.round(costs[0][b])).append("/")
+                        .append(Math.round(costs[1][b]));
+            }
+        }
+        return s.append("]").toString();
+    }
+
+}
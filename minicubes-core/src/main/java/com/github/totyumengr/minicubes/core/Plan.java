@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * How {@link MiniCube} reads records of a filter, chosen by statistics of index: count of values of dimension and
+ * cardinalities of their bitmaps. See {@link MiniCube#explain(java.util.Map)}.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class Plan {
+
+    public enum Access {
+        /**
+         * No filter, stream all records.
+         */
+        FULL_SCAN,
+        /**
+         * Filter is not selective, stream all records and check values of dimensions, bitmaps are not built.
+         */
+        PREDICATE_SCAN,
+        /**
+         * Stream all records and check filter bitmap.
+         */
+        BITMAP_FILTERED_SCAN,
+        /**
+         * Filter is selective, iterate filter bitmap and look up records.
+         */
+        BITMAP_ITERATION
+    }
+
+    private Access access;
+    private boolean parallel;
+    /**
+     * Least rows from which parallel stream is chosen by timings of this kind of access so far.
+     */
+    private long parallelRows = Long.MAX_VALUE;
+    private long totalRows;
+    private long estimatedRows;
+    /**
+     * Estimated rows is cardinality of filter bitmap.
+     */
+    private boolean exact;
+    /**
+     * Statistics of every filter dimension, most selective first.
+     */
+    private List<String> steps = new ArrayList<String>();
+    /**
+     * Aggregations which are answered by index without touching records.
+     */
+    private List<String> indexOnly = new ArrayList<String>();
+
+    /**
+     * Filter bitmap of {@link Access#BITMAP_FILTERED_SCAN} and {@link Access#BITMAP_ITERATION}.
+     */
+    private transient RoaringBitmap found;
+
+    public Plan() {
+        super();
+    }
+
+    Plan(Access access, long totalRows, long estimatedRows, boolean exact, RoaringBitmap found) {
+        super();
+        this.access = access;
+        this.totalRows = totalRows;
+        this.estimatedRows = estimatedRows;
+        this.exact = exact;
+        this.found = found;
+    }
+
+    RoaringBitmap found() {
+        return found;
+    }
+
+    /**
+     * @return rows which are read by plan
+     */
+    public long scannedRows() {
+        return access == Access.BITMAP_ITERATION ? estimatedRows : totalRows;
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    public void setAccess(Access access) {
+        this.access = access;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public long getParallelRows() {
+        return parallelRows;
+    }
+
+    public void setParallelRows(long parallelRows) {
+        this.parallelRows = parallelRows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<String> steps) {
+        this.steps = steps;
+    }
+
+    public List<String> getIndexOnly() {
+        return indexOnly;
+    }
+
+    public void setIndexOnly(List<String> indexOnly) {
+        this.indexOnly = indexOnly;
+    }
+
+    @Override
+    public String toString() {
+        return "Plan [access=" + access + ", parallel=" + parallel + (parallelRows == Long.MAX_VALUE ? "" 
+                : " from " + parallelRows) + ", rows=" + (exact ? "" : "~") + estimatedRows
+                + "/" + totalRows + ", steps=" + steps + ", indexOnly=" + indexOnly + "]";
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2014 Ran Meng
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.totyumengr.minicubes.core;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * <a href="https://github.com/tdunning/t-digest">t-digest</a> sketch of values for approximate quantiles like median
+ * and p95. Digests of cubes are merged by adding centroids of one into another, so quantiles on cluster ship at most
+ * about <code>compression</code> centroids per group instead of values.
+ *
+ * <p>This is the merging variant with scale function <code>k(q) = compression / 2PI * asin(2q - 1)</code>: values are
+ * buffered and sorted, adjacent centroids are merged while they span at most 1 in <code>k</code>, so centroids are
+ * small near both tails and error of p99 is much lower than of median.
+ * @author mengran
+ *
+ * @since 0.3
+ */
+public class TDigest {
+
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    /**
+     * Centroids are [0, merged), buffered values follow them.
+     */
+    private double[] means;
+    private long[] weights;
+    private int merged;
+    private int size;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression count of centroids is at most about it, higher is more accurate
+     */
+    public TDigest(double compression) {
+        super();
+        Assert.isTrue(compression >= 10, "Compression must be 10 at least.");
+        this.compression = compression;
+        int capacity = (int) (compression * 5) + 10;
+        this.means = new double[capacity];
+        this.weights = new long[capacity];
+    }
+
+    /**
+     * @param compression same to digest which is copied
+     * @param min min value
+     * @param max max value
+     * @param means means of centroids, sorted
+     * @param weights weights of centroids
+     */
+    public TDigest(double compression, double min, double max, double[] means, long[] weights) {
+        this(compression);
+        Assert.isTrue(means.length == weights.length, "Means and weights must have same length.");
+        for (int i = 0; i < means.length; i++) {
+            add(means[i], weights[i]);
+        }
+        this.min = min;
+        this.max = max;
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double mean, long weight) {
+
+        if (size == means.length) {
+            compress();
+        }
+        means[size] = mean;
+        weights[size] = weight;
+        size++;
+        count += weight;
+        min = Math.min(min, mean);
+        max = Math.max(max, mean);
+    }
+
+    /**
+     * @param other digest which is merged into this, it is not changed.
+     * @return this
+     */
+    public TDigest merge(TDigest other) {
+
+        for (int i = 0; i < other.size; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(Math.max(-1, Math.min(1, 2 * q - 1)));
+    }
+
+    /**
+     * Merge buffered values into centroids.
+     */
+    private void compress() {
+
+        if (merged == size) {
+            return;
+        }
+        sort(0, size - 1);
+        int out = 0;
+        long weightSoFar = 0;
+        double mean = means[0];
+        long weight = weights[0];
+        for (int i = 1; i < size; i++) {
+            if (k((double) (weightSoFar + weight + weights[i]) / count) - k((double) weightSoFar / count) <= 1) {
+                weight += weights[i];
+                mean += (means[i] - mean) * weights[i] / weight;
+            } else {
+                means[out] = mean;
+                weights[out++] = weight;
+                weightSoFar += weight;
+                mean = means[i];
+                weight = weights[i];
+            }
+        }
+        means[out] = mean;
+        weights[out++] = weight;
+        merged = size = out;
+    }
+
+    /**
+     * Quick sort of means, weights are moved together.
+     */
+    private void sort(int from, int to) {
+
+        while (from < to) {
+            double pivot = means[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (means[i] < pivot) {
+                    i++;
+                }
+                while (means[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double m = means[i];
+                    means[i] = means[j];
+                    means[j] = m;
+                    long w = weights[i];
+                    weights[i++] = weights[j];
+                    weights[j--] = w;
+                }
+            }
+            // Recurse into smaller part
+            if (j - from < to - i) {
+                sort(from, j);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j;
+            }
+        }
+    }
+
+    /**
+     * @param q quantile between 0 and 1, e.g. 0.5 for median
+     * @return estimated value of quantile, {@link Double#NaN} when nothing is added.
+     */
+    public double quantile(double q) {
+
+        Assert.isTrue(q >= 0 && q <= 1, "Quantile must be between 0 and 1.");
+        compress();
+        if (merged == 0) {
+            return Double.NaN;
+        }
+        if (merged == 1) {
+            return min + q * (max - min);
+        }
+        double index = q * count;
+        if (index < weights[0] / 2.0) {
+            return min + (means[0] - min) * index / (weights[0] / 2.0);
+        }
+        int last = merged - 1;
+        if (index > count - weights[last] / 2.0) {
+            return max - (max - means[last]) * (count - index) / (weights[last] / 2.0);
+        }
+        // Interpolate between centers of adjacent centroids.
+        double center = weights[0] / 2.0;
+        for (int i = 0; i < last; i++) {
+            double next = center + (weights[i] + weights[i + 1]) / 2.0;
+            if (index <= next) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / (next - center);
+            }
+            center = next;
+        }
+        return means[last];
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return means of centroids, sorted
+     */
+    public double[] getMeans() {
+
+        compress();
+        return Arrays.copyOf(means, merged);
+    }
+
+    /**
+     * @return weights of centroids in order of {@link #getMeans()}
+     */
+    public long[] getWeights() {
+
+        compress();
+        return Arrays.copyOf(weights, merged);
+    }
+
+    @Override
+    public String toString() {
+        return "TDigest [compression=" + compression + ", count=" + count + ", min=" + min + ", max=" + max + "]";
+    }
+
+}
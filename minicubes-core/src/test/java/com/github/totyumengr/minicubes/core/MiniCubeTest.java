@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import md.math.DoubleDouble;
 
@@ -339,4 +340,430 @@ public class MiniCubeTest {
         }
     }
     
+    @Test
+    public void test_8_1_Batch_shared_filter() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        Map<String, List<Integer>> dateFilter = new HashMap<String, List<Integer>>(1);
+        dateFilter.put("the_date", Arrays.asList(new Integer[] {20140606}));
+        
+        Object[] results = miniCube.batch(() -> new Object[] {
+            miniCube.sum("csm", filter), 
+            miniCube.sum("csm", "tradeId", new HashMap<String, List<Integer>>(filter)),
+            miniCube.count("csm", dateFilter)});
+        Assert.assertEquals("41612111.56000000", results[0].toString());
+        @SuppressWarnings("unchecked")
+        Map<Integer, BigDecimal> group = (Map<Integer, BigDecimal>) results[1];
+        Assert.assertEquals("543138.14000000", group.get(3201).toString());
+        Assert.assertEquals(903885L, results[2]);
+    }
+    
+    @Test
+    public void test_9_1_Sum_multiple_indicates() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        List<String> indNames = Arrays.asList(new String[] {"csm", "cash", "click", "shw"});
+        
+        Map<String, BigDecimal> sum = miniCube.sum(indNames, filter);
+        Assert.assertEquals("41612111.56000000", sum.get("csm").toString());
+        Map<String, Map<Integer, BigDecimal>> group = miniCube.sum(indNames, "tradeId", filter);
+        Assert.assertEquals("543138.14000000", group.get("csm").get(3201).toString());
+        for (String indName : indNames) {
+            Assert.assertEquals(miniCube.sum(indName, filter), sum.get(indName));
+            Assert.assertEquals(miniCube.sum(indName, "tradeId", filter), group.get(indName));
+        }
+    }
+    
+    @Test
+    public void test_10_1_Group_by_multiple_dimensions() throws Throwable {
+        
+        Assert.assertArrayEquals(new int[] {3201, Integer.MAX_VALUE}, 
+                GroupKey.unpack(GroupKey.pack(3201, Integer.MAX_VALUE), 2));
+        Assert.assertArrayEquals(new int[] {65535, 0, 1, 3201}, GroupKey.unpack(GroupKey.pack(65535, 0, 1, 3201), 4));
+        Assert.assertEquals(GroupKey.of(20140606, -1), GroupKey.of(20140606, -1));
+        Assert.assertEquals("20140606,-1", GroupKey.of(20140606, -1).toString());
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        List<String> groupByDimNames = Arrays.asList(new String[] {"tradeId", "productLineId"});
+        
+        Map<GroupKey, BigDecimal> sum = miniCube.sum("csm", groupByDimNames, filter);
+        Map<GroupKey, Long> count = miniCube.count("csm", groupByDimNames, filter);
+        Assert.assertEquals(sum.keySet(), count.keySet());
+        
+        // Roll up to tradeId
+        Map<Integer, BigDecimal> sumByTrade = new HashMap<Integer, BigDecimal>();
+        sum.forEach((k, v) -> sumByTrade.merge(k.get(0), v, BigDecimal::add));
+        Map<Integer, Long> countByTrade = new HashMap<Integer, Long>();
+        count.forEach((k, v) -> countByTrade.merge(k.get(0), v, Long::sum));
+        Assert.assertEquals(miniCube.sum("csm", "tradeId", filter), sumByTrade);
+        Assert.assertEquals(miniCube.count("csm", "tradeId", filter), countByTrade);
+    }
+    
+    @Test
+    public void test_10_2_Group_by_date_and_multiple_dimensions() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        Map<Integer, BigDecimal> sumByTrade = miniCube.sum("csm", "tradeId", filter);
+        Map<Integer, Long> countByTrade = miniCube.count("csm", "tradeId", filter);
+        
+        // Values of the_date and postId do not fit into 64 / 3 or 64 / 4 bits.
+        List<List<String>> groupByDimNames = Arrays.asList(Arrays.asList("the_date", "tradeId", "postId"), 
+                Arrays.asList("the_date", "tradeId", "productLineId", "postId"));
+        for (List<String> dimNames : groupByDimNames) {
+            Map<GroupKey, BigDecimal> sum = miniCube.sum("csm", dimNames, filter);
+            Map<GroupKey, Long> count = miniCube.count("csm", dimNames, filter);
+            Assert.assertEquals(sum.keySet(), count.keySet());
+            Map<Integer, BigDecimal> sumRollUp = new HashMap<Integer, BigDecimal>();
+            sum.forEach((k, v) -> {
+                Assert.assertEquals(20140606, k.get(0));
+                sumRollUp.merge(k.get(1), v, BigDecimal::add);
+            });
+            Map<Integer, Long> countRollUp = new HashMap<Integer, Long>();
+            count.forEach((k, v) -> countRollUp.merge(k.get(1), v, Long::sum));
+            Assert.assertEquals(sumByTrade, sumRollUp);
+            Assert.assertEquals(countByTrade, countRollUp);
+        }
+        
+        List<Map<GroupKey, BigDecimal>> sets = miniCube.sumGroupingSets("csm", Arrays.asList(
+                groupByDimNames.get(1), Arrays.asList("the_date"), Arrays.<String>asList()), filter);
+        Assert.assertEquals(miniCube.sum("csm", groupByDimNames.get(1), filter), sets.get(0));
+        Assert.assertEquals(miniCube.sum("csm", filter), sets.get(1).get(GroupKey.of(20140606)));
+        Assert.assertEquals(miniCube.sum("csm", filter), sets.get(2).get(GroupKey.of()));
+    }
+    
+    @Test
+    public void test_11_1_Sum_grouping_sets() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        List<List<String>> groupingSets = Arrays.asList(Arrays.asList("tradeId"), Arrays.asList("productLineId"), 
+                Arrays.asList("tradeId", "productLineId"), Arrays.<String>asList());
+        
+        List<Map<GroupKey, BigDecimal>> sets = miniCube.sumGroupingSets("csm", groupingSets, filter);
+        Assert.assertEquals(4, sets.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(miniCube.sum("csm", groupingSets.get(i), filter), sets.get(i));
+        }
+        Assert.assertEquals(miniCube.sum("csm", filter), sets.get(3).get(GroupKey.of()));
+    }
+    
+    @Test
+    public void test_12_1_Top_sum() throws Throwable {
+        
+        Map<Integer, BigDecimal> group = miniCube.sum("csm", "postId", null);
+        Map<Integer, BigDecimal> top = miniCube.topSum("csm", "postId", null, 50);
+        Assert.assertEquals(Math.min(50, group.size()), top.size());
+        BigDecimal last = null;
+        for (Entry<Integer, BigDecimal> e : top.entrySet()) {
+            Assert.assertEquals(group.get(e.getKey()), e.getValue());
+            Assert.assertTrue(last == null || last.compareTo(e.getValue()) >= 0);
+            last = e.getValue();
+        }
+        for (Entry<Integer, BigDecimal> e : group.entrySet()) {
+            Assert.assertTrue(top.containsKey(e.getKey()) || e.getValue().compareTo(last) <= 0);
+        }
+    }
+    
+    @Test
+    public void test_13_1_Having() throws Throwable {
+        
+        Map<Integer, BigDecimal> group = miniCube.sum("csm", "postId", null);
+        Map<Integer, BigDecimal> having = miniCube.sum("csm", "postId", null, Having.gt(new BigDecimal(1000)));
+        Assert.assertTrue(having.size() < group.size());
+        group.forEach((k, v) -> Assert.assertEquals(v.compareTo(new BigDecimal(1000)) > 0, having.containsKey(k)));
+        
+        Map<Integer, Long> count = miniCube.count("csm", "postId", null, Having.ge(new BigDecimal(10)));
+        count.values().forEach(v -> Assert.assertTrue(v >= 10));
+        Assert.assertEquals(miniCube.count("csm", "postId", null).values().stream().filter(v -> v >= 10).count(), 
+                count.size());
+    }
+    
+    @Test
+    public void test_14_1_Measures() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        Measure ctr = Measure.divide(Measure.sum("click"), Measure.sum("shw"));
+        List<Measure> measures = Arrays.asList(ctr, Measure.avg("csm"), Measure.min("csm"), Measure.max("csm"), 
+                Measure.count());
+        
+        List<BigDecimal> result = miniCube.measures(measures, filter);
+        Assert.assertEquals(miniCube.sum("click", filter).divide(miniCube.sum("shw", filter), Aggregations.IND_SCALE, 
+                BigDecimal.ROUND_HALF_UP), result.get(0));
+        Assert.assertEquals(miniCube.sum("csm", filter).divide(new BigDecimal(miniCube.count("csm", filter)), 
+                Aggregations.IND_SCALE, BigDecimal.ROUND_HALF_UP), result.get(1));
+        Assert.assertTrue(result.get(2).compareTo(result.get(3)) <= 0);
+        Assert.assertEquals(miniCube.count("csm", filter), result.get(4).longValue());
+        
+        Map<Integer, List<BigDecimal>> group = miniCube.measures(measures, "tradeId", filter);
+        Map<Integer, Long> count = miniCube.count("csm", "tradeId", filter);
+        Assert.assertEquals(count.keySet(), group.keySet());
+        group.forEach((k, v) -> Assert.assertEquals(count.get(k).longValue(), v.get(4).longValue()));
+    }
+    
+    @Test
+    public void test_15_1_Measure_range_filter() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        BigDecimal ten = new BigDecimal(10);
+        Filter gt = new Filter(filter).measure("csm", Having.gt(ten));
+        Filter le = new Filter(filter).measure("csm", Having.le(ten));
+        
+        Assert.assertEquals(miniCube.count("csm", filter), miniCube.count("csm", gt) + miniCube.count("csm", le));
+        Assert.assertEquals(miniCube.sum("csm", filter), miniCube.sum("csm", gt).add(miniCube.sum("csm", le)));
+        // Filter equals to plain map of same dimensions both ways, batch must not share its bitmap with predicates
+        Assert.assertEquals(gt, filter);
+        Assert.assertEquals(filter, gt);
+        Assert.assertEquals(gt.hashCode(), filter.hashCode());
+        Assert.assertNotEquals(Filter.keyOf(gt), Filter.keyOf(filter));
+        Assert.assertNotEquals(Filter.keyOf(gt), Filter.keyOf(le));
+        Assert.assertEquals(Filter.keyOf(new Filter(filter)), Filter.keyOf(filter));
+        Assert.assertArrayEquals(new Object[] {miniCube.count("csm", filter), miniCube.count("csm", gt)}, 
+                miniCube.batch(() -> new Object[] {miniCube.count("csm", filter), miniCube.count("csm", gt)}));
+        List<BigDecimal> range = miniCube.measures(Arrays.asList(Measure.min("csm"), Measure.max("csm")), gt);
+        Assert.assertTrue(range.get(0).compareTo(ten) > 0);
+        Assert.assertTrue(miniCube.measures(Arrays.asList(Measure.max("csm")), le).get(0).compareTo(ten) <= 0);
+        
+        // Range only
+        Filter between = new Filter().measure("csm", Having.gt(ten)).measure("csm", Having.le(new BigDecimal(100)));
+        Assert.assertEquals(miniCube.count("csm", new Filter().measure("csm", Having.gt(ten))) 
+                - miniCube.count("csm", new Filter().measure("csm", Having.gt(new BigDecimal(100)))), 
+                miniCube.count("csm", between));
+    }
+    
+    @Test
+    public void test_16_1_Sum_by_slices() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        
+        // Click is integer, so sum by slices must equal sum of groups which scan records.
+        BigDecimal scan = miniCube.sum("click", "tradeId", filter).values().stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Assert.assertEquals(scan, miniCube.sum("click", filter));
+        Assert.assertEquals(miniCube.sum("click", "tradeId", null).values().stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add), miniCube.sum("click"));
+    }
+    
+    @Test
+    public void test_17_1_Index_only_count() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        
+        Map<Integer, Long> group = miniCube.count("csm", "tradeId", filter);
+        Assert.assertEquals(miniCube.count("csm", filter), group.values().stream().mapToLong(Long::longValue).sum());
+        // Compare with scanning of multi-dimensions group-by
+        Map<GroupKey, Long> scan = miniCube.count("csm", Arrays.asList("tradeId"), filter);
+        group.forEach((k, v) -> Assert.assertEquals(v, scan.get(GroupKey.of(k))));
+    }
+    
+    @Test
+    public void test_18_1_Approximate_distinct_count() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        
+        Map<Integer, Integer> exact = miniCube.discnt("postId", true, "tradeId", filter);
+        Map<Integer, Integer> approximate = miniCube.discnt("postId", true, "tradeId", filter, 14);
+        Assert.assertEquals(exact.keySet(), approximate.keySet());
+        // 0.8% standard error, 5% is far enough
+        exact.forEach((k, v) -> Assert.assertEquals(v, approximate.get(k), v * 0.05 + 1));
+    }
+    
+    @Test
+    public void test_19_1_Quantiles_and_histogram() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        
+        Map<Integer, List<BigDecimal>> quantiles = miniCube.quantiles("csm", "tradeId", filter, 
+                new double[] {0, 0.5, 0.95, 1});
+        Map<Integer, List<BigDecimal>> range = miniCube.measures(Arrays.asList(Measure.min("csm"), 
+                Measure.max("csm")), "tradeId", filter);
+        Assert.assertEquals(range.keySet(), quantiles.keySet());
+        quantiles.forEach((k, v) -> {
+            Assert.assertEquals(range.get(k).get(0).doubleValue(), v.get(0).doubleValue(), 0.00000001);
+            Assert.assertEquals(range.get(k).get(1).doubleValue(), v.get(3).doubleValue(), 0.00000001);
+            Assert.assertTrue(v.get(1).compareTo(v.get(2)) <= 0);
+        });
+        
+        Map<Integer, long[]> histogram = miniCube.histogram("csm", null, filter, new double[] {0, 10, 100});
+        Assert.assertEquals(4, histogram.get(0).length);
+        Assert.assertEquals(miniCube.count("csm", filter), Arrays.stream(histogram.get(0)).sum());
+        Assert.assertEquals(miniCube.count("csm", new Filter(filter).measure("csm", Having.ge(BigDecimal.TEN))
+                .measure("csm", Having.lt(new BigDecimal(100)))), histogram.get(0)[2]);
+    }
+    
+    @Test
+    public void test_20_1_Estimate_by_sample() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        
+        Map<Integer, Estimate> count = miniCube.estimateCount("tradeId", filter);
+        Map<Integer, Estimate> sum = miniCube.estimateSum("csm", "tradeId", filter);
+        Assert.assertEquals(count.keySet(), sum.keySet());
+        count.forEach((k, v) -> {
+            Assert.assertTrue(v.getRows() > 0);
+            Assert.assertEquals(v.getRows(), sum.get(k).getRows());
+            Assert.assertTrue(v.getError().signum() >= 0);
+        });
+        Assert.assertTrue(miniCube.count("csm", filter) >= miniCube.estimateCount(null, filter).get(0).getRows());
+    }
+    
+    @Test
+    public void test_21_1_Condition_filter() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        
+        // NOT IN is complement of IN
+        Assert.assertEquals(miniCube.count("csm"), miniCube.count("csm", filter) 
+                + miniCube.count("csm", new Filter().where(Condition.not(Condition.in("tradeId", 3201, 3202, 3203)))));
+        // BETWEEN covers all of IN
+        Assert.assertEquals(miniCube.count("csm", filter), 
+                miniCube.count("csm", new Filter().where(Condition.between("tradeId", 3201, 3203))));
+        // OR across dimensions
+        Map<String, List<Integer>> postId = new HashMap<String, List<Integer>>(1);
+        postId.put("postId", Arrays.asList(new Integer[] {51631}));
+        Map<String, List<Integer>> both = new HashMap<String, List<Integer>>(filter);
+        both.putAll(postId);
+        Assert.assertEquals(miniCube.sum("csm", filter).add(miniCube.sum("csm", postId))
+                .subtract(miniCube.sum("csm", both)), miniCube.sum("csm", new Filter().where(Condition.or(
+                        Condition.in("tradeId", 3201, 3202, 3203), Condition.in("postId", 51631)))));
+    }
+    
+    @Test
+    public void test_22_1_Selective_first_filter() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(2);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        filter.put("postId", Arrays.asList(new Integer[] {51631}));
+        Assert.assertEquals(miniCube.count("csm", filter), miniCube.count("csm", new Filter().where(Condition.and(
+                Condition.in("postId", 51631), Condition.in("tradeId", 3201, 3202, 3203)))));
+        
+        // Empty intersection short-circuits other dimensions
+        filter.put("productLineId", Arrays.asList(new Integer[] {-1}));
+        Assert.assertEquals(0, miniCube.count("csm", filter));
+        Assert.assertEquals(0, miniCube.sum("csm", filter).signum());
+    }
+    
+    @Test
+    public void test_23_1_Between_by_dimension_range_index() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        Assert.assertEquals(miniCube.sum("csm", filter), 
+                miniCube.sum("csm", new Filter().where(Condition.between("tradeId", 3201, 3203))));
+        Assert.assertEquals(miniCube.count("csm"), 
+                miniCube.count("csm", new Filter().where(Condition.between("the_date", 0, Integer.MAX_VALUE))));
+        Assert.assertEquals(0, miniCube.count("csm", new Filter().where(Condition.between("tradeId", 3203, 3201))));
+    }
+    
+    @Test
+    public void test_24_1_Explain() throws Throwable {
+        
+        Plan plan = miniCube.explain(null);
+        Assert.assertEquals(Plan.Access.FULL_SCAN, plan.getAccess());
+        Assert.assertEquals(miniCube.count("csm"), plan.getEstimatedRows());
+        Assert.assertTrue(plan.getIndexOnly().contains("count"));
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {3201, 3202, 3203}));
+        plan = miniCube.explain(filter);
+        Assert.assertEquals(1, plan.getSteps().size());
+        if (plan.isExact()) {
+            Assert.assertEquals(miniCube.count("csm", filter), plan.getEstimatedRows());
+        }
+    }
+    
+    @Test
+    public void test_25_1_Adaptive_parallel() throws Throwable {
+        
+        // Small scan is never parallel, even if tuner prefers parallel from 0 rows.
+        ParallelTuner tuner = new ParallelTuner(0);
+        for (int i = 0; i < ParallelTuner.EXPLORE_EVERY; i++) {
+            Assert.assertFalse(tuner.parallel(ParallelTuner.SEQUENTIAL_MAX_ROWS - 1));
+        }
+        Assert.assertTrue(tuner.parallel(ParallelTuner.SEQUENTIAL_MAX_ROWS));
+        // Learn that sequential is cheaper, then every scan but exploring one is sequential.
+        tuner = new ParallelTuner(0);
+        tuner.observe(1 << 20, true, 4L << 20);
+        tuner.observe(1 << 20, false, 1L << 20);
+        int parallel = 0;
+        for (int i = 0; i < ParallelTuner.EXPLORE_EVERY; i++) {
+            parallel += tuner.parallel(1 << 20) ? 1 : 0;
+        }
+        Assert.assertEquals(1, parallel);
+        Assert.assertFalse(tuner.prefer(1 << 20));
+        
+        miniCube.setParallelMode(true);
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {MiniCube.DUMMY_FILTER_DIM}));
+        Plan plan = miniCube.explain(filter);
+        Assert.assertTrue(plan.scannedRows() < ParallelTuner.SEQUENTIAL_MAX_ROWS);
+        Assert.assertFalse(plan.isParallel());
+        
+        BigDecimal sum = miniCube.sum("csm");
+        miniCube.setParallelMode(false);
+        plan = miniCube.explain(null);
+        Assert.assertFalse(plan.isParallel());
+        Assert.assertEquals(Long.MAX_VALUE, plan.getParallelRows());
+        Assert.assertEquals(sum, miniCube.sum("csm"));
+        miniCube.setParallelMode(true);
+    }
+    
+    @Test
+    public void test_26_1_Distinct_by_index_and_by_scan() throws Throwable {
+        
+        Map<String, List<Integer>> filter = new HashMap<String, List<Integer>>(1);
+        filter.put("tradeId", Arrays.asList(new Integer[] {
+            3205, 3206, 3207, 3208, 3209, 3210, 3212, 3299, 
+            3204, 3203, 3202, 3201, 3211}));
+        
+        // 1 date * 210 tradeIds pairs, intersect bitmaps of index
+        Assert.assertTrue(210 <= MiniCube.INDEX_ONLY_GROUPS);
+        Assert.assertEquals(210, miniCube.discnt("tradeId", true, "the_date", null).get(20140606).intValue());
+        Assert.assertEquals(13, miniCube.discnt("tradeId", true, "the_date", filter).get(20140606).intValue());
+        Map<Integer, RoaringBitmap> byIndex = miniCube.distinct("the_date", true, "tradeId", filter);
+        Assert.assertEquals(filter.get("tradeId").size(), byIndex.size());
+        byIndex.values().forEach(v -> Assert.assertEquals(RoaringBitmap.bitmapOf(20140606), v));
+        
+        // 13 tradeIds * thousands of postIds pairs, scan records into bitmaps of threads
+        Map<Integer, RoaringBitmap> byScan = miniCube.distinct("postId", true, "tradeId", filter);
+        Assert.assertEquals(byIndex.keySet(), byScan.keySet());
+        Assert.assertEquals(277, byScan.get(3209).getCardinality());
+        Assert.assertEquals(186, byScan.get(3211).getCardinality());
+        Assert.assertEquals(464, byScan.get(3206).getCardinality());
+        miniCube.setParallelMode(false);
+        Assert.assertEquals(byScan, miniCube.distinct("postId", true, "tradeId", filter));
+        Assert.assertEquals(277, miniCube.discnt("postId", true, "tradeId", filter).get(3209).intValue());
+        miniCube.setParallelMode(true);
+        Map<Integer, Integer> discnt = miniCube.discnt("postId", true, "tradeId", new HashMap<String, List<Integer>>());
+        Assert.assertEquals(210, discnt.size());
+        Assert.assertEquals(3089, discnt.get(1601).intValue());
+        Assert.assertEquals(1825, discnt.get(1702).intValue());
+        Assert.assertEquals(2058, discnt.get(-2).intValue());
+    }
+    
 }